@@ -0,0 +1,65 @@
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:25
+ *
+ * Splits the ROM into basic blocks. A block ends with its first jump, before a HALT or the end of
+ * the program, or before a leader: the target of a jump whose address is loaded by the A-Command
+ * right before it, and the command after a jump. A jump to a computed address (A=M; 0;JMP) may go
+ * anywhere, so a block is identified by the pc it is entered at, not by the leaders alone.
+ */
+public class BasicBlocks {
+	//longer blocks are cut, so the generated methods stay small enough for the JVM to compile
+	public static final int MAX_LENGTH = 256;
+
+	private int[] code;
+	private boolean[] leaders;
+
+	public BasicBlocks(HackProgram program) {
+		this.code = program.getCode();
+		this.leaders = new boolean[this.code.length];
+		this.leaders[0] = true;
+		for (int i = 0; i < program.size(); i++) {
+			int op = this.code[i];
+			if (op < 0 && HackProgram.jump(op) != 0) {
+				this.leaders[i + 1] = true;
+				if (i > 0 && this.code[i - 1] >= 0) {
+					this.leaders[this.code[i - 1]] = true;
+				}
+			}
+		}
+	}
+
+	public boolean isLeader(int pc) {
+		return leaders[pc];
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the number of commands in the block entered at pc, 0 if pc is a HALT or
+	 * after the program
+	 * @Date 13:25 2026/10/18
+	 * @Param [pc]
+	 * @return int
+	 **/
+	public int length(int pc) {
+		int i = pc;
+		while (i - pc < MAX_LENGTH) {
+			int op = this.code[i];
+			if (op < 0) {
+				int dispatch = HackProgram.dispatch(op);
+				if (dispatch == HackProgram.HALT || dispatch == HackProgram.END) {
+					break;
+				}
+				if (HackProgram.jump(op) != 0) {
+					i++;
+					break;
+				}
+			}
+			i++;
+			if (this.leaders[i]) {
+				break;
+			}
+		}
+		return i - pc;
+	}
+}
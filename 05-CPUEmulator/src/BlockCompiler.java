@@ -0,0 +1,495 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:25
+ *
+ * Compiles regions of the ROM into JVM classes. A region is the basic blocks reachable from a hot
+ * block by the jumps whose target is loaded right before them and by the commands after the
+ * jumps, which are the return addresses of the calls. It becomes one method, which finds the
+ * block of the pc by a lookupswitch and goes from block to block without returning, also through
+ * the jumps to computed addresses, until the pc leaves the region or the budget is used up. The
+ * bytecode is written directly by ClassFileWriter, with A and D in local variables and the RAM as
+ * an int[], so compiling takes microseconds and needs no javac, and the JVM compiles the hot
+ * regions again into machine code.
+ */
+public class BlockCompiler {
+	//the longest method the JVM compiles into machine code, the longer ones are interpreted
+	public static final int MAX_CODE = 8000;
+	//the bytes of the method besides the blocks, and of every block in the lookupswitch
+	private static final int FRAME_CODE = 64;
+	private static final int SWITCH_ENTRY = 8;
+	//the locals of the generated method
+	private static final int PC = 1;
+	private static final int RAM = 2;
+	private static final int DIRTY_ROWS = 3;
+	private static final int REGISTERS = 4;
+	private static final int BUDGET = 5;
+	private static final int A = 6;
+	private static final int D = 7;
+	private static final int V = 8;
+	//the address in A & 0x7FFF before the command, for M and the jump target
+	private static final int T = 9;
+	private static final int N = 10;
+	private static final String DESCRIPTOR = "(I[I[J[II)I";
+	//the branches of the jump bits j1 (< 0), j2 (== 0) and j3 (> 0), 7 always jumps
+	private static final int[] CONDITIONS = {0, ClassFileWriter.IFGT, ClassFileWriter.IFEQ,
+			ClassFileWriter.IFGE, ClassFileWriter.IFLT, ClassFileWriter.IFNE, ClassFileWriter.IFLE};
+	private static final boolean[] READS_M = new boolean[HackProgram.ALU + 1];
+
+	static {
+		int[] reads = {HackProgram.M, HackProgram.NOT_M, HackProgram.NEG_M, HackProgram.M_PLUS_1,
+				HackProgram.M_MINUS_1, HackProgram.D_PLUS_M, HackProgram.D_MINUS_M,
+				HackProgram.M_MINUS_D, HackProgram.D_AND_M, HackProgram.D_OR_M, HackProgram.ALU};
+		for (int dispatch : reads) {
+			READS_M[dispatch] = true;
+		}
+	}
+
+	private HackProgram program;
+	private BasicBlocks blocks;
+	private RegionLoader loader = new RegionLoader(CompiledBlock.class.getClassLoader());
+	private int regions;
+	//told why a region failed, nothing is printed without it
+	private Consumer<String> diagnostics;
+
+	public BlockCompiler(HackProgram program, BasicBlocks blocks) {
+		this.program = program;
+		this.blocks = blocks;
+	}
+
+	public void setDiagnostics(Consumer<String> diagnostics) {
+		this.diagnostics = diagnostics;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the blocks of the region of the hot block at pc, nearest first until the
+	 * method would be longer than MAX_CODE, sorted. The code of a block doesn't depend on the
+	 * other blocks, so every block is measured by writing it alone. The loop heads of
+	 * idleLoops, if any, are left out, except pc itself, so the emulator gets back there to
+	 * skip them.
+	 * @Date 14:55 2026/10/18
+	 * @Param [pc, idleLoops]
+	 * @return int[]
+	 **/
+	public int[] region(int pc, IdleLoops idleLoops) {
+		int[] code = this.program.getCode();
+		boolean[] seen = new boolean[code.length];
+		int[] res = new int[16];
+		int n = 0;
+		int size = FRAME_CODE;
+		ArrayDeque<Integer> work = new ArrayDeque<>();
+		work.add(pc);
+		while (!work.isEmpty()) {
+			int block = work.poll();
+			if (seen[block] || block != pc && idleLoops != null && idleLoops.isLoop(block)) {
+				continue;
+			}
+			seen[block] = true;
+			int length = this.blocks.length(block);
+			if (length == 0) {
+				continue;
+			}
+			int bytes = size(block) + SWITCH_ENTRY;
+			if (size + bytes > MAX_CODE && n > 0) {
+				break;
+			}
+			if (n == res.length) {
+				res = Arrays.copyOf(res, n * 2);
+			}
+			res[n++] = block;
+			size += bytes;
+			int end = block + length;
+			int last = code[end - 1];
+			if (last < 0 && HackProgram.jump(last) != 0 && length > 1 && code[end - 2] >= 0) {
+				work.add(code[end - 2]);
+			}
+			work.add(end);
+		}
+		res = Arrays.copyOf(res, n);
+		Arrays.sort(res);
+		return res;
+	}
+
+	//the bytes of the code of the block at pc
+	private int size(int pc) {
+		ClassFileWriter writer = new ClassFileWriter();
+		int outside = writer.newLabel();
+		block(writer, new int[0], new int[0], outside, outside, pc);
+		return writer.getLength();
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //compile the blocks of a region, sorted, into a class of its own. null if it
+	 * fails, the reason goes to the diagnostics.
+	 * @Date 14:55 2026/10/18
+	 * @Param [region]
+	 * @return CompiledBlock
+	 **/
+	public CompiledBlock compile(int[] region) {
+		//no string concatenation, its first use takes milliseconds to set up
+		String className = "HackRegion".concat(String.valueOf(this.regions++));
+		try {
+			byte[] bytes = generate(className, region);
+			return (CompiledBlock) this.loader.define(className, bytes).getDeclaredConstructor()
+					.newInstance();
+		} catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+			if (this.diagnostics != null) {
+				//the first line, a VerifyError goes on with the whole bytecode
+				String message = String.valueOf(e.getMessage()).split("\n", 2)[0];
+				this.diagnostics.accept("the region at " + region[0] + " is not compiled: "
+						+ e.getClass().getName() + ": " + message);
+			}
+			return null;
+		}
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the class of the region: run(pc, ram, dirtyRows, registers, budget). Every
+	 * block checks first that it fits in the budget, the exit stores the registers back and
+	 * returns the pc.
+	 * @Date 14:55 2026/10/18
+	 * @Param [className, region]
+	 * @return byte[]
+	 **/
+	private byte[] generate(String className, int[] region) {
+		ClassFileWriter writer = new ClassFileWriter();
+		writer.setFrameLocals(className, "I", "[I", "[J", "[I", "I", "I", "I", "I", "I", "I");
+		writer.local(ClassFileWriter.ALOAD, REGISTERS);
+		writer.push(0);
+		writer.op(ClassFileWriter.IALOAD);
+		writer.local(ClassFileWriter.ISTORE, A);
+		writer.local(ClassFileWriter.ALOAD, REGISTERS);
+		writer.push(1);
+		writer.op(ClassFileWriter.IALOAD);
+		writer.local(ClassFileWriter.ISTORE, D);
+		for (int local : new int[]{V, T, N}) {
+			writer.push(0);
+			writer.local(ClassFileWriter.ISTORE, local);
+		}
+		int dispatch = writer.newLabel();
+		int exit = writer.newLabel();
+		int[] labels = new int[region.length];
+		for (int i = 0; i < region.length; i++) {
+			labels[i] = writer.newLabel();
+		}
+		writer.bind(dispatch);
+		writer.local(ClassFileWriter.ILOAD, PC);
+		writer.lookupSwitch(region, labels, exit);
+		for (int i = 0; i < region.length; i++) {
+			writer.bind(labels[i]);
+			block(writer, region, labels, dispatch, exit, region[i]);
+		}
+		writer.bind(exit);
+		int[] registers = {A, D, N};
+		for (int i = 0; i < registers.length; i++) {
+			writer.local(ClassFileWriter.ALOAD, REGISTERS);
+			writer.push(i);
+			writer.local(ClassFileWriter.ILOAD, registers[i]);
+			writer.op(ClassFileWriter.IASTORE);
+		}
+		writer.local(ClassFileWriter.ILOAD, PC);
+		writer.op(ClassFileWriter.IRETURN);
+		return writer.toBytes(className, "CompiledBlock", "run", DESCRIPTOR, 8, N + 1);
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the code of the block at pc. While A holds a value loaded by an A-Command,
+	 * the RAM index and the jump target are constants, and the jump goes straight to the block
+	 * there. A computed target goes through the lookupswitch.
+	 * @Date 14:55 2026/10/18
+	 * @Param [writer, region, labels, dispatch, exit, pc]
+	 * @return void
+	 **/
+	private void block(ClassFileWriter writer, int[] region, int[] labels, int dispatch,
+	                   int exit, int pc) {
+		int[] code = this.program.getCode();
+		int length = this.blocks.length(pc);
+		//n > budget - length, the pc is already the block's
+		writer.local(ClassFileWriter.ILOAD, N);
+		writer.local(ClassFileWriter.ILOAD, BUDGET);
+		writer.push(length);
+		writer.op(ClassFileWriter.ISUB);
+		writer.branch(ClassFileWriter.IF_ICMPGT, exit);
+		writer.local(ClassFileWriter.ILOAD, N);
+		writer.push(length);
+		writer.op(ClassFileWriter.IADD);
+		writer.local(ClassFileWriter.ISTORE, N);
+		int known = -1;
+		boolean jumps = false;
+		for (int i = pc; i < pc + length; i++) {
+			int op = code[i];
+			if (op >= 0) {
+				writer.push(op);
+				writer.local(ClassFileWriter.ISTORE, A);
+				known = op;
+				continue;
+			}
+			int comp = HackProgram.dispatch(op);
+			int dest = HackProgram.dest(op);
+			int jump = HackProgram.jump(op);
+			if (known < 0 && (READS_M[comp] || (dest & HackProgram.DEST_M) != 0 || jump != 0)) {
+				writer.local(ClassFileWriter.ILOAD, A);
+				writer.push(0x7FFF);
+				writer.op(ClassFileWriter.IAND);
+				writer.local(ClassFileWriter.ISTORE, T);
+			}
+			comp(writer, op, known);
+			writer.local(ClassFileWriter.ISTORE, V);
+			if ((dest & HackProgram.DEST_M) != 0) {
+				store(writer, known);
+			}
+			if ((dest & HackProgram.DEST_D) != 0) {
+				writer.local(ClassFileWriter.ILOAD, V);
+				writer.local(ClassFileWriter.ISTORE, D);
+			}
+			if ((dest & HackProgram.DEST_A) != 0) {
+				writer.local(ClassFileWriter.ILOAD, V);
+				writer.local(ClassFileWriter.ISTORE, A);
+			}
+			if (jump != 0) {
+				//the last command of the block
+				jumps = true;
+				if (jump != 7) {
+					int taken = writer.newLabel();
+					writer.local(ClassFileWriter.ILOAD, V);
+					writer.branch(CONDITIONS[jump], taken);
+					next(writer, region, labels, exit, i + 1);
+					writer.bind(taken);
+				}
+				if (known >= 0) {
+					next(writer, region, labels, exit, known);
+				} else {
+					writer.local(ClassFileWriter.ILOAD, T);
+					writer.local(ClassFileWriter.ISTORE, PC);
+					writer.branch(ClassFileWriter.GOTO, dispatch);
+				}
+			}
+			if ((dest & HackProgram.DEST_A) != 0) {
+				known = -1;
+			}
+		}
+		if (!jumps) {
+			next(writer, region, labels, exit, pc + length);
+		}
+	}
+
+	//go on at the constant pc: to its block in the region, or out
+	private static void next(ClassFileWriter writer, int[] region, int[] labels, int exit,
+	                         int pc) {
+		writer.push(pc);
+		writer.local(ClassFileWriter.ISTORE, PC);
+		int index = Arrays.binarySearch(region, pc);
+		writer.branch(ClassFileWriter.GOTO, index >= 0 ? labels[index] : exit);
+	}
+
+	//the value of M, the word at the known address or at T
+	private static void memory(ClassFileWriter writer, int known) {
+		writer.local(ClassFileWriter.ALOAD, RAM);
+		if (known >= 0) {
+			writer.push(known);
+		} else {
+			writer.local(ClassFileWriter.ILOAD, T);
+		}
+		writer.op(ClassFileWriter.IALOAD);
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //push the comp of op, cut to 16 bits like the interpreter does
+	 * @Date 14:55 2026/10/18
+	 * @Param [writer, op, known]
+	 * @return void
+	 **/
+	private static void comp(ClassFileWriter writer, int op, int known) {
+		int comp = HackProgram.dispatch(op);
+		switch (comp) {
+			case HackProgram.ZERO:
+				writer.push(0);
+				return;
+			case HackProgram.ONE:
+				writer.push(1);
+				return;
+			case HackProgram.MINUS_ONE:
+				writer.push(-1);
+				return;
+			case HackProgram.ALU:
+				writer.push(HackProgram.comp(op));
+				writer.local(ClassFileWriter.ILOAD, D);
+				writer.local(ClassFileWriter.ILOAD, A);
+				memory(writer, known);
+				writer.invokeStatic("CPUEmulator", "alu", "(IIII)I");
+				return;
+			default:
+				break;
+		}
+		//x is D, A or M, y is the second operand if there is one
+		int x;
+		int y = -1;
+		int operation;
+		boolean cut = true;
+		switch (comp) {
+			case HackProgram.D:
+			case HackProgram.A:
+			case HackProgram.M:
+				x = comp;
+				operation = -1;
+				cut = false;
+				break;
+			case HackProgram.NOT_D:
+			case HackProgram.NOT_A:
+			case HackProgram.NOT_M:
+				x = comp - HackProgram.NOT_D + HackProgram.D;
+				operation = ClassFileWriter.IXOR;
+				y = HackProgram.MINUS_ONE;
+				cut = false;
+				break;
+			case HackProgram.NEG_D:
+			case HackProgram.NEG_A:
+			case HackProgram.NEG_M:
+				x = comp - HackProgram.NEG_D + HackProgram.D;
+				operation = ClassFileWriter.INEG;
+				break;
+			case HackProgram.D_PLUS_1:
+			case HackProgram.A_PLUS_1:
+			case HackProgram.M_PLUS_1:
+				x = comp - HackProgram.D_PLUS_1 + HackProgram.D;
+				operation = ClassFileWriter.IADD;
+				y = HackProgram.ONE;
+				break;
+			case HackProgram.D_MINUS_1:
+			case HackProgram.A_MINUS_1:
+			case HackProgram.M_MINUS_1:
+				x = comp - HackProgram.D_MINUS_1 + HackProgram.D;
+				operation = ClassFileWriter.ISUB;
+				y = HackProgram.ONE;
+				break;
+			case HackProgram.D_PLUS_A:
+			case HackProgram.D_PLUS_M:
+				x = HackProgram.D;
+				y = comp == HackProgram.D_PLUS_A ? HackProgram.A : HackProgram.M;
+				operation = ClassFileWriter.IADD;
+				break;
+			case HackProgram.D_MINUS_A:
+			case HackProgram.D_MINUS_M:
+				x = HackProgram.D;
+				y = comp == HackProgram.D_MINUS_A ? HackProgram.A : HackProgram.M;
+				operation = ClassFileWriter.ISUB;
+				break;
+			case HackProgram.A_MINUS_D:
+			case HackProgram.M_MINUS_D:
+				x = comp == HackProgram.A_MINUS_D ? HackProgram.A : HackProgram.M;
+				y = HackProgram.D;
+				operation = ClassFileWriter.ISUB;
+				break;
+			case HackProgram.D_AND_A:
+			case HackProgram.D_AND_M:
+				x = HackProgram.D;
+				y = comp == HackProgram.D_AND_A ? HackProgram.A : HackProgram.M;
+				operation = ClassFileWriter.IAND;
+				cut = false;
+				break;
+			default:
+				x = HackProgram.D;
+				y = comp == HackProgram.D_OR_A ? HackProgram.A : HackProgram.M;
+				operation = ClassFileWriter.IOR;
+				cut = false;
+				break;
+		}
+		operand(writer, x, known);
+		if (y >= 0) {
+			operand(writer, y, known);
+		}
+		if (operation >= 0) {
+			writer.op(operation);
+		}
+		if (cut) {
+			writer.op(ClassFileWriter.I2S);
+		}
+	}
+
+	//D, A, M, or the constants 1 and -1
+	private static void operand(ClassFileWriter writer, int operand, int known) {
+		switch (operand) {
+			case HackProgram.D:
+				writer.local(ClassFileWriter.ILOAD, D);
+				break;
+			case HackProgram.A:
+				writer.local(ClassFileWriter.ILOAD, A);
+				break;
+			case HackProgram.M:
+				memory(writer, known);
+				break;
+			case HackProgram.ONE:
+				writer.push(1);
+				break;
+			default:
+				writer.push(-1);
+				break;
+		}
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //M = V. The keyboard and the addresses after it can't be written, the screen
+	 * marks the row dirty; for a known address both are decided here.
+	 * @Date 14:55 2026/10/18
+	 * @Param [writer, known]
+	 * @return void
+	 **/
+	private static void store(ClassFileWriter writer, int known) {
+		if (known >= 0) {
+			if (known >= CPUEmulator.KBD) {
+				return;
+			}
+			writer.local(ClassFileWriter.ALOAD, RAM);
+			writer.push(known);
+			writer.local(ClassFileWriter.ILOAD, V);
+			writer.op(ClassFileWriter.IASTORE);
+			if (known >= CPUEmulator.SCREEN) {
+				//the word and the bit of the row are constants too
+				int row = (known - CPUEmulator.SCREEN) / CPUEmulator.ROW_WORDS;
+				writer.local(ClassFileWriter.ALOAD, DIRTY_ROWS);
+				writer.push(row / 64);
+				writer.op(ClassFileWriter.DUP2);
+				writer.op(ClassFileWriter.LALOAD);
+				writer.pushLong(1L << row);
+				writer.op(ClassFileWriter.LOR);
+				writer.op(ClassFileWriter.LASTORE);
+			}
+			return;
+		}
+		int skip = writer.newLabel();
+		writer.local(ClassFileWriter.ILOAD, T);
+		writer.push(CPUEmulator.KBD);
+		writer.branch(ClassFileWriter.IF_ICMPGE, skip);
+		writer.local(ClassFileWriter.ALOAD, RAM);
+		writer.local(ClassFileWriter.ILOAD, T);
+		writer.local(ClassFileWriter.ILOAD, V);
+		writer.op(ClassFileWriter.IASTORE);
+		writer.local(ClassFileWriter.ILOAD, T);
+		writer.push(CPUEmulator.SCREEN);
+		writer.branch(ClassFileWriter.IF_ICMPLT, skip);
+		writer.local(ClassFileWriter.ALOAD, DIRTY_ROWS);
+		writer.local(ClassFileWriter.ILOAD, T);
+		writer.invokeStatic("CPUEmulator", "markDirty", "([JI)V");
+		writer.bind(skip);
+	}
+
+	//defines the classes of the regions
+	private static class RegionLoader extends ClassLoader {
+		RegionLoader(ClassLoader parent) {
+			super(parent);
+		}
+
+		Class<?> define(String name, byte[] bytes) {
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+}
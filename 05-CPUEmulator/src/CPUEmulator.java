@@ -0,0 +1,377 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:22
+ *
+ * A headless Hack computer: the CPU, 32K words of RAM with the screen at 16384 and the keyboard
+ * at 24576, and the ROM given by a HackProgram. The registers and the RAM hold the 16 bit values
+ * sign extended into ints.
+ */
+public class CPUEmulator {
+	public static final int SCREEN = 16384;
+	public static final int KBD = 24576;
+	public static final int SCREEN_WIDTH = 512;
+	public static final int SCREEN_HEIGHT = 256;
+	//the words of one screen row
+	public static final int ROW_WORDS = SCREEN_WIDTH / 16;
+
+	//why run() stopped
+	public static final int LIMIT = 0;
+	public static final int HALTED = 1;
+	public static final int END_OF_PROGRAM = 2;
+
+	private HackProgram program;
+	private int[] ram = new int[HackProgram.ROM_SIZE];
+	//one bit per screen row written since clearDirtyRows(), row r is bit r % 64 of word r / 64
+	private long[] dirtyRows = new long[SCREEN_HEIGHT / 64];
+	private int pc;
+	private int a;
+	private int d;
+	private long cycles;
+	private int state = LIMIT;
+
+	public CPUEmulator(HackProgram program) {
+		this.program = program;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //set the registers, for the engines which execute the program themselves
+	 * and leave the state here between their runs
+	 * @Date 13:25 2026/10/18
+	 * @Param [pc, a, d, cycles]
+	 * @return void
+	 **/
+	public void setRegisters(int pc, int a, int d, long cycles) {
+		this.pc = pc;
+		this.a = a;
+		this.d = d;
+		this.cycles = cycles;
+	}
+
+	public void reset() {
+		this.pc = 0;
+		this.a = 0;
+		this.d = 0;
+		this.cycles = 0;
+		this.state = LIMIT;
+	}
+
+	public int getPc() {
+		return pc;
+	}
+
+	public int getA() {
+		return a;
+	}
+
+	public int getD() {
+		return d;
+	}
+
+	public long getCycles() {
+		return cycles;
+	}
+
+	public int getState() {
+		return state;
+	}
+
+	public HackProgram getProgram() {
+		return program;
+	}
+
+	public int[] getRam() {
+		return ram;
+	}
+
+	public long[] getDirtyRows() {
+		return dirtyRows;
+	}
+
+	public void clearDirtyRows() {
+		Arrays.fill(this.dirtyRows, 0);
+	}
+
+	//the row is (address - SCREEN) / ROW_WORDS, the shift of a long only uses its low 6 bits
+	public static void markDirty(long[] dirtyRows, int address) {
+		dirtyRows[(address - SCREEN) >>> 11] |= 1L << ((address - SCREEN) >>> 5);
+	}
+
+	public int peek(int address) {
+		return this.ram[address & 0x7FFF];
+	}
+
+	public void poke(int address, int value) {
+		int index = address & 0x7FFF;
+		this.ram[index] = (short) value;
+		if (index >= SCREEN && index < KBD) {
+			markDirty(this.dirtyRows, index);
+		}
+	}
+
+	//the key being pressed, 0 if none
+	public void setKey(int key) {
+		this.ram[KBD] = (short) key;
+	}
+
+	public boolean getPixel(int x, int y) {
+		int word = this.ram[SCREEN + y * ROW_WORDS + (x >>> 4)];
+		return (word >>> (x & 15) & 1) != 0;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //run until the program halts or maxCycles more instructions are executed.
+	 * The registers live in local variables while running. The comp and the jump use the A
+	 * before the command, so do the address of M and the target of the jump. The writes into
+	 * the keyboard and the addresses after it are dropped, like the real memory does, the writes
+	 * into the screen mark their rows dirty.
+	 * @Date 13:22 2026/10/18
+	 * @Param [maxCycles]
+	 * @return int why it stops: LIMIT, HALTED or END_OF_PROGRAM
+	 **/
+	public int run(long maxCycles) {
+		return run(maxCycles, null);
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //run() which also counts down the jump targets: every taken jump takes one
+	 * from the count of its target, and when the count goes below 0 the run stops at the target,
+	 * before its first command, with LIMIT. Only the taken jumps are checked, so the commands
+	 * in between run as fast as without the counts. null counts nothing.
+	 * @Date 14:19 2026/10/18
+	 * @Param [maxCycles, countdown]
+	 * @return int LIMIT, HALTED or END_OF_PROGRAM
+	 **/
+	public int run(long maxCycles, int[] countdown) {
+		final int[] code = this.program.getCode();
+		final int[] ram = this.ram;
+		final long[] dirtyRows = this.dirtyRows;
+		int pc = this.pc;
+		int a = this.a;
+		int d = this.d;
+		long remaining = maxCycles;
+		int state = LIMIT;
+		loop:
+		while (remaining > 0) {
+			int op = code[pc];
+			if (op >= 0) {
+				a = op;
+				pc++;
+				remaining--;
+				continue;
+			}
+			int value;
+			switch (op & 0x1F) {
+				case HackProgram.ZERO:
+					value = 0;
+					break;
+				case HackProgram.ONE:
+					value = 1;
+					break;
+				case HackProgram.MINUS_ONE:
+					value = -1;
+					break;
+				case HackProgram.D:
+					value = d;
+					break;
+				case HackProgram.A:
+					value = a;
+					break;
+				case HackProgram.M:
+					value = ram[a & 0x7FFF];
+					break;
+				case HackProgram.NOT_D:
+					value = ~d;
+					break;
+				case HackProgram.NOT_A:
+					value = ~a;
+					break;
+				case HackProgram.NOT_M:
+					value = ~ram[a & 0x7FFF];
+					break;
+				case HackProgram.NEG_D:
+					value = (short) -d;
+					break;
+				case HackProgram.NEG_A:
+					value = (short) -a;
+					break;
+				case HackProgram.NEG_M:
+					value = (short) -ram[a & 0x7FFF];
+					break;
+				case HackProgram.D_PLUS_1:
+					value = (short) (d + 1);
+					break;
+				case HackProgram.A_PLUS_1:
+					value = (short) (a + 1);
+					break;
+				case HackProgram.M_PLUS_1:
+					value = (short) (ram[a & 0x7FFF] + 1);
+					break;
+				case HackProgram.D_MINUS_1:
+					value = (short) (d - 1);
+					break;
+				case HackProgram.A_MINUS_1:
+					value = (short) (a - 1);
+					break;
+				case HackProgram.M_MINUS_1:
+					value = (short) (ram[a & 0x7FFF] - 1);
+					break;
+				case HackProgram.D_PLUS_A:
+					value = (short) (d + a);
+					break;
+				case HackProgram.D_PLUS_M:
+					value = (short) (d + ram[a & 0x7FFF]);
+					break;
+				case HackProgram.D_MINUS_A:
+					value = (short) (d - a);
+					break;
+				case HackProgram.D_MINUS_M:
+					value = (short) (d - ram[a & 0x7FFF]);
+					break;
+				case HackProgram.A_MINUS_D:
+					value = (short) (a - d);
+					break;
+				case HackProgram.M_MINUS_D:
+					value = (short) (ram[a & 0x7FFF] - d);
+					break;
+				case HackProgram.D_AND_A:
+					value = d & a;
+					break;
+				case HackProgram.D_AND_M:
+					value = d & ram[a & 0x7FFF];
+					break;
+				case HackProgram.D_OR_A:
+					value = d | a;
+					break;
+				case HackProgram.D_OR_M:
+					value = d | ram[a & 0x7FFF];
+					break;
+				case HackProgram.ALU:
+					value = alu(HackProgram.comp(op), d, a, ram[a & 0x7FFF]);
+					break;
+				case HackProgram.HALT:
+					state = HALTED;
+					break loop;
+				default:
+					state = END_OF_PROGRAM;
+					break loop;
+			}
+			//the jump goes to the old A
+			int target = a & 0x7FFF;
+			int dest = (op >>> 6) & 0x7;
+			if (dest != 0) {
+				if ((dest & HackProgram.DEST_M) != 0) {
+					if (target < KBD) {
+						ram[target] = value;
+						if (target >= SCREEN) {
+							markDirty(dirtyRows, target);
+						}
+					}
+				}
+				if ((dest & HackProgram.DEST_D) != 0) {
+					d = value;
+				}
+				if ((dest & HackProgram.DEST_A) != 0) {
+					a = value;
+				}
+			}
+			remaining--;
+			if (!jumps(op, value)) {
+				pc++;
+				continue;
+			}
+			pc = target;
+			if (countdown != null && --countdown[target] < 0) {
+				break;
+			}
+		}
+		this.cycles += maxCycles - remaining;
+		this.pc = pc;
+		this.a = a;
+		this.d = d;
+		this.state = state;
+		return state;
+	}
+
+	//the jump bits are j1 (< 0), j2 (== 0) and j3 (> 0)
+	private static boolean jumps(int op, int value) {
+		int jump = (op >>> 9) & 0x7;
+		return jump != 0 && (jump & (value < 0 ? 4 : value == 0 ? 2 : 1)) != 0;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the ALU chip bit by bit, only for the comps outside the language
+	 * @Date 13:22 2026/10/18
+	 * @Param [comp, d, a, m]
+	 * @return int
+	 **/
+	public static int alu(int comp, int d, int a, int m) {
+		int x = d;
+		int y = (comp & 0x40) != 0 ? m : a;
+		if ((comp & 0x20) != 0) {
+			x = 0;
+		}
+		if ((comp & 0x10) != 0) {
+			x = ~x;
+		}
+		if ((comp & 0x08) != 0) {
+			y = 0;
+		}
+		if ((comp & 0x04) != 0) {
+			y = ~y;
+		}
+		int out = (comp & 0x02) != 0 ? x + y : x & y;
+		if ((comp & 0x01) != 0) {
+			out = ~out;
+		}
+		return (short) out;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.out.println("Usage:java CPUEmulator [-cycles n] [-key code] [-dump from-to] "
+					+ "program.hack");
+			return;
+		}
+		long maxCycles = Long.MAX_VALUE;
+		int key = 0;
+		int dumpFrom = 0;
+		int dumpTo = 15;
+		String input = null;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-cycles") && i + 1 < args.length) {
+				maxCycles = Long.parseLong(args[++i]);
+			} else if (args[i].equals("-key") && i + 1 < args.length) {
+				key = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-dump") && i + 1 < args.length) {
+				String[] range = args[++i].split("-");
+				dumpFrom = Integer.parseInt(range[0]);
+				dumpTo = Integer.parseInt(range[range.length - 1]);
+			} else {
+				input = args[i];
+			}
+		}
+		if (input == null) {
+			throw new IllegalArgumentException("No program");
+		}
+		CPUEmulator emulator = new CPUEmulator(HackProgram.load(new File(input)));
+		emulator.setKey(key);
+		long start = System.nanoTime();
+		int state = emulator.run(maxCycles);
+		long nanos = System.nanoTime() - start;
+		String[] states = {"cycle limit", "halted", "end of program"};
+		System.out.printf("%s at pc=%d after %d cycles, %.2f ms, %.1f M instructions/s%n",
+				states[state], emulator.getPc(), emulator.getCycles(), nanos / 1e6,
+				emulator.getCycles() * 1e3 / Math.max(nanos, 1));
+		for (int i = dumpFrom; i <= dumpTo; i++) {
+			System.out.println("RAM[" + i + "] = " + emulator.peek(i));
+		}
+	}
+}
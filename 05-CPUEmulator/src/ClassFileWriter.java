@@ -0,0 +1,397 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 14:55
+ *
+ * Writes a JVM class file with a public constructor and one public method, whose code is given
+ * command by command. Only what BlockCompiler needs is here: int and reference locals, branches
+ * to labels and a lookupswitch. The stack is empty at every label and the locals always have the
+ * same types, so every label gets the same stack map frame, given by setFrameLocals().
+ */
+public class ClassFileWriter {
+	public static final int ICONST_0 = 0x03;
+	public static final int LDC2_W = 0x14;
+	public static final int ILOAD = 0x15;
+	public static final int ALOAD = 0x19;
+	public static final int IALOAD = 0x2e;
+	public static final int LALOAD = 0x2f;
+	public static final int ISTORE = 0x36;
+	public static final int IASTORE = 0x4f;
+	public static final int LASTORE = 0x50;
+	public static final int DUP2 = 0x5c;
+	public static final int IADD = 0x60;
+	public static final int ISUB = 0x64;
+	public static final int INEG = 0x74;
+	public static final int IAND = 0x7e;
+	public static final int IOR = 0x80;
+	public static final int IXOR = 0x82;
+	public static final int LOR = 0x81;
+	public static final int I2S = 0x93;
+	public static final int IFEQ = 0x99;
+	public static final int IFNE = 0x9a;
+	public static final int IFLT = 0x9b;
+	public static final int IFGE = 0x9c;
+	public static final int IFGT = 0x9d;
+	public static final int IFLE = 0x9e;
+	public static final int IF_ICMPLT = 0xa1;
+	public static final int IF_ICMPGE = 0xa2;
+	public static final int IF_ICMPGT = 0xa3;
+	public static final int GOTO = 0xa7;
+	public static final int IRETURN = 0xac;
+	public static final int INVOKESTATIC = 0xb8;
+	private static final int BIPUSH = 0x10;
+	private static final int SIPUSH = 0x11;
+	private static final int LDC_W = 0x13;
+	private static final int LOOKUPSWITCH = 0xab;
+
+	//the constant pool, every entry is written once, the indexes are kept by kind. The keys are
+	// not made by string concatenation, its first use takes milliseconds to set up.
+	private ByteArrayOutputStream pool = new ByteArrayOutputStream();
+	private HashMap<Integer, Integer> ints = new HashMap<>();
+	private HashMap<Long, Integer> longs = new HashMap<>();
+	private HashMap<String, Integer> strings = new HashMap<>();
+	private HashMap<String, Integer> classes = new HashMap<>();
+	private HashMap<String, Integer> methods = new HashMap<>();
+	private int poolCount = 1;
+	private byte[] code = new byte[1024];
+	private int length;
+	//the offset of every label, -1 until bound
+	private int[] labels = new int[16];
+	private int labelCount;
+	//the branches to patch: the offset of the command, of its operand, the label and the width
+	private ArrayList<int[]> branches = new ArrayList<>();
+	private int[] frameLocals;
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the types of the locals at every label: "I" is an int, anything else is the
+	 * name of a class, like "[I" or the class being written
+	 * @Date 14:55 2026/10/18
+	 * @Param [types]
+	 * @return void
+	 **/
+	public void setFrameLocals(String... types) {
+		this.frameLocals = new int[types.length];
+		for (int i = 0; i < types.length; i++) {
+			this.frameLocals[i] = types[i].equals("I") ? 0 : classRef(types[i]);
+		}
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	public int newLabel() {
+		if (this.labelCount == this.labels.length) {
+			this.labels = Arrays.copyOf(this.labels, this.labelCount * 2);
+		}
+		this.labels[this.labelCount] = -1;
+		return this.labelCount++;
+	}
+
+	public void bind(int label) {
+		this.labels[label] = this.length;
+	}
+
+	public void op(int opcode) {
+		u1(opcode);
+	}
+
+	//iload, istore, aload and the like, the locals are fewer than 256
+	public void local(int opcode, int index) {
+		u1(opcode);
+		u1(index);
+	}
+
+	public void push(int value) {
+		if (value >= -1 && value <= 5) {
+			u1(ICONST_0 + value);
+		} else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+			u1(BIPUSH);
+			u1(value);
+		} else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+			u1(SIPUSH);
+			u2(value);
+		} else {
+			Integer index = this.ints.get(value);
+			if (index == null) {
+				index = this.poolCount++;
+				this.pool.write(3);
+				for (int shift = 24; shift >= 0; shift -= 8) {
+					this.pool.write(value >>> shift);
+				}
+				this.ints.put(value, index);
+			}
+			u1(LDC_W);
+			u2(index);
+		}
+	}
+
+	public void pushLong(long value) {
+		Integer index = this.longs.get(value);
+		if (index == null) {
+			index = this.poolCount;
+			this.pool.write(5);
+			for (int shift = 56; shift >= 0; shift -= 8) {
+				this.pool.write((int) (value >>> shift));
+			}
+			//a long takes two entries
+			this.poolCount += 2;
+			this.longs.put(value, index);
+		}
+		u1(LDC2_W);
+		u2(index);
+	}
+
+	public void invokeStatic(String owner, String name, String descriptor) {
+		u1(INVOKESTATIC);
+		u2(methodRef(owner, name, descriptor));
+	}
+
+	//a conditional branch or a goto
+	public void branch(int opcode, int label) {
+		this.branches.add(new int[]{this.length, this.length + 1, label, 2});
+		u1(opcode);
+		u2(0);
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //jump to the label of the key on the stack, keys must be sorted
+	 * @Date 14:55 2026/10/18
+	 * @Param [keys, targets, otherwise]
+	 * @return void
+	 **/
+	public void lookupSwitch(int[] keys, int[] targets, int otherwise) {
+		int start = this.length;
+		u1(LOOKUPSWITCH);
+		while (this.length % 4 != 0) {
+			u1(0);
+		}
+		this.branches.add(new int[]{start, this.length, otherwise, 4});
+		u4(0);
+		u4(keys.length);
+		for (int i = 0; i < keys.length; i++) {
+			u4(keys[i]);
+			this.branches.add(new int[]{start, this.length, targets[i], 4});
+			u4(0);
+		}
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the class file: className implements the interface by the code written so
+	 * far as the method name with the descriptor
+	 * @Date 14:55 2026/10/18
+	 * @Param [className, interfaceName, name, descriptor, maxStack, maxLocals]
+	 * @return byte[]
+	 **/
+	public byte[] toBytes(String className, String interfaceName, String name,
+	                      String descriptor, int maxStack, int maxLocals) {
+		for (int[] branch : this.branches) {
+			int target = this.labels[branch[2]];
+			if (target < 0) {
+				throw new IllegalStateException("label " + branch[2] + " is not bound");
+			}
+			int offset = target - branch[0];
+			if (branch[3] == 2 && offset != (short) offset) {
+				throw new IllegalStateException("the method is too long: " + this.length);
+			}
+			for (int i = 0; i < branch[3]; i++) {
+				this.code[branch[1] + i] = (byte) (offset >>> 8 * (branch[3] - 1 - i));
+			}
+		}
+		int thisClass = classRef(className);
+		int object = classRef("java/lang/Object");
+		int anInterface = classRef(interfaceName);
+		int init = methodRef("java/lang/Object", "<init>", "()V");
+		int codeName = utf8("Code");
+		int initName = utf8("<init>");
+		int initDescriptor = utf8("()V");
+		int methodName = utf8(name);
+		int methodDescriptor = utf8(descriptor);
+		int frames = utf8("StackMapTable");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeInt(0xCAFEBABE);
+			//Java 8, the verifier checks the stack map frames instead of computing them
+			out.writeShort(0);
+			out.writeShort(52);
+			out.writeShort(this.poolCount);
+			this.pool.writeTo(out);
+			//public final super
+			out.writeShort(0x31);
+			out.writeShort(thisClass);
+			out.writeShort(object);
+			out.writeShort(1);
+			out.writeShort(anInterface);
+			out.writeShort(0);
+			out.writeShort(2);
+			//the constructor calls the one of Object
+			out.writeShort(1);
+			out.writeShort(initName);
+			out.writeShort(initDescriptor);
+			out.writeShort(1);
+			out.writeShort(codeName);
+			out.writeInt(17);
+			out.writeShort(1);
+			out.writeShort(1);
+			out.writeInt(5);
+			out.writeByte(0x2a);
+			out.writeByte(0xb7);
+			out.writeShort(init);
+			out.writeByte(0xb1);
+			out.writeShort(0);
+			out.writeShort(0);
+			//the method
+			byte[] table = frames();
+			out.writeShort(1);
+			out.writeShort(methodName);
+			out.writeShort(methodDescriptor);
+			out.writeShort(1);
+			out.writeShort(codeName);
+			out.writeInt(12 + this.length + 6 + table.length);
+			out.writeShort(maxStack);
+			out.writeShort(maxLocals);
+			out.writeInt(this.length);
+			out.write(this.code, 0, this.length);
+			out.writeShort(0);
+			out.writeShort(1);
+			out.writeShort(frames);
+			out.writeInt(table.length);
+			out.write(table);
+			out.writeShort(0);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	//one frame at every bound label: the first is full, the others are the same
+	private byte[] frames() {
+		int[] offsets = new int[this.labelCount];
+		int n = 0;
+		for (int i = 0; i < this.labelCount; i++) {
+			if (this.labels[i] >= 0) {
+				offsets[n++] = this.labels[i];
+			}
+		}
+		Arrays.sort(offsets, 0, n);
+		//labels bound at the same offset share the frame
+		int distinct = 0;
+		for (int i = 0; i < n; i++) {
+			if (distinct == 0 || offsets[i] != offsets[distinct - 1]) {
+				offsets[distinct++] = offsets[i];
+			}
+		}
+		offsets = Arrays.copyOf(offsets, distinct);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeShort(offsets.length);
+			int previous = -1;
+			for (int offset : offsets) {
+				int delta = offset - previous - 1;
+				if (previous < 0) {
+					out.writeByte(255);
+					out.writeShort(delta);
+					out.writeShort(this.frameLocals.length);
+					for (int type : this.frameLocals) {
+						if (type == 0) {
+							out.writeByte(1);
+						} else {
+							out.writeByte(7);
+							out.writeShort(type);
+						}
+					}
+					out.writeShort(0);
+				} else if (delta < 64) {
+					out.writeByte(delta);
+				} else {
+					out.writeByte(251);
+					out.writeShort(delta);
+				}
+				previous = offset;
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	private int utf8(String value) {
+		Integer index = this.strings.get(value);
+		if (index == null) {
+			index = this.poolCount++;
+			this.pool.write(1);
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			this.pool.write(bytes.length >>> 8);
+			this.pool.write(bytes.length);
+			this.pool.write(bytes, 0, bytes.length);
+			this.strings.put(value, index);
+		}
+		return index;
+	}
+
+	private int classRef(String name) {
+		Integer index = this.classes.get(name);
+		if (index == null) {
+			int utf8 = utf8(name);
+			index = this.poolCount++;
+			this.pool.write(7);
+			this.pool.write(utf8 >>> 8);
+			this.pool.write(utf8);
+			this.classes.put(name, index);
+		}
+		return index;
+	}
+
+	private int methodRef(String owner, String name, String descriptor) {
+		String key = owner.concat(".").concat(name).concat(descriptor);
+		Integer index = this.methods.get(key);
+		if (index == null) {
+			int ownerIndex = classRef(owner);
+			int nameIndex = utf8(name);
+			int descriptorIndex = utf8(descriptor);
+			int nameAndType = this.poolCount++;
+			this.pool.write(12);
+			this.pool.write(nameIndex >>> 8);
+			this.pool.write(nameIndex);
+			this.pool.write(descriptorIndex >>> 8);
+			this.pool.write(descriptorIndex);
+			index = this.poolCount++;
+			this.pool.write(10);
+			this.pool.write(ownerIndex >>> 8);
+			this.pool.write(ownerIndex);
+			this.pool.write(nameAndType >>> 8);
+			this.pool.write(nameAndType);
+			this.methods.put(key, index);
+		}
+		return index;
+	}
+
+	private void u1(int value) {
+		if (this.length == this.code.length) {
+			this.code = Arrays.copyOf(this.code, this.length * 2);
+		}
+		this.code[this.length++] = (byte) value;
+	}
+
+	private void u2(int value) {
+		u1(value >>> 8);
+		u1(value);
+	}
+
+	private void u4(int value) {
+		u2(value >>> 16);
+		u2(value);
+	}
+}
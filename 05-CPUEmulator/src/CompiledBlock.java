@@ -0,0 +1,20 @@
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:25
+ *
+ * A region of basic blocks of the ROM compiled into a JVM class by BlockCompiler.
+ */
+public interface CompiledBlock {
+	/*
+	 * @Author HuangChuan
+	 * @Description //execute from the block at pc, which must be one of the region, and go on
+	 * through the blocks of the region until the pc leaves it or the next block doesn't fit in
+	 * budget commands. registers holds A and D when it is called, and A, D and the number of
+	 * executed commands when it returns. The writes into the screen mark their rows in
+	 * dirtyRows, see CPUEmulator.markDirty().
+	 * @Date 13:25 2026/10/18
+	 * @Param [pc, ram, dirtyRows, registers, budget]
+	 * @return int the next pc
+	 **/
+	int run(int pc, int[] ram, long[] dirtyRows, int[] registers, int budget);
+}
@@ -0,0 +1,241 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:39
+ *
+ * Captures the screen of a running program as frame hashes and PNG files. Every row of the screen
+ * is kept encoded as a PNG scanline together with its hash, and only the rows the CPUEmulator
+ * marked dirty since the last capture are encoded again, so a frame where nothing was drawn costs
+ * almost nothing. The hash of a frame is the 64 bit FNV-1a of the hashes of its rows, the hash of a
+ * row is the FNV-1a of its 32 words, low byte first.
+ */
+public class FrameExporter {
+	public static final long DEFAULT_EVERY = 1000000;
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+	private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+	//the filter byte and 512 pixels of 1 bit
+	private static final int SCANLINE = 1 + CPUEmulator.SCREEN_WIDTH / 8;
+
+	private byte[] scanlines = new byte[CPUEmulator.SCREEN_HEIGHT * SCANLINE];
+	private long[] rowHashes = new long[CPUEmulator.SCREEN_HEIGHT];
+	private long frameHash;
+	private boolean first = true;
+	private int frames;
+	private int pngs;
+	private long encodedRows;
+	//null when the frames are not written
+	private File pngDir;
+	private PrintWriter hashes;
+	private Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+	private ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+	private byte[] buffer = new byte[8192];
+
+	public FrameExporter(File pngDir, PrintWriter hashes) {
+		this.pngDir = pngDir;
+		this.hashes = hashes;
+	}
+
+	public long getFrameHash() {
+		return frameHash;
+	}
+
+	public int getFrames() {
+		return frames;
+	}
+
+	public int getPngs() {
+		return pngs;
+	}
+
+	public long getEncodedRows() {
+		return encodedRows;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //take a frame of the screen of cpu: encode the dirty rows, clear the dirty
+	 * rows of cpu, write a "frame<TAB>cycles<TAB>hash" line and, when the frame is different from
+	 * the last one, the PNG file frame-<frame>.png. The first frame encodes all the rows.
+	 * @Date 13:39 2026/10/18
+	 * @Param [cpu]
+	 * @return boolean whether the frame changed
+	 **/
+	public boolean capture(CPUEmulator cpu) throws IOException {
+		long[] dirtyRows = cpu.getDirtyRows();
+		int[] ram = cpu.getRam();
+		boolean changed = this.first;
+		for (int row = 0; row < CPUEmulator.SCREEN_HEIGHT; row++) {
+			if (this.first || (dirtyRows[row >>> 6] & 1L << row) != 0) {
+				changed |= encode(ram, row);
+			}
+		}
+		cpu.clearDirtyRows();
+		this.first = false;
+		if (changed) {
+			long hash = FNV_OFFSET;
+			for (long rowHash : this.rowHashes) {
+				hash = (hash ^ rowHash) * FNV_PRIME;
+			}
+			this.frameHash = hash;
+		}
+		if (this.hashes != null) {
+			this.hashes.printf("%d\t%d\t%016x%n", this.frames, cpu.getCycles(), this.frameHash);
+		}
+		if (changed && this.pngDir != null) {
+			writePng(new File(this.pngDir, String.format("frame-%06d.png", this.frames)));
+			this.pngs++;
+		}
+		this.frames++;
+		return changed;
+	}
+
+	//encode the row again, a row written with the same words doesn't change the frame
+	private boolean encode(int[] ram, int row) {
+		this.encodedRows++;
+		int address = CPUEmulator.SCREEN + row * CPUEmulator.ROW_WORDS;
+		int offset = row * SCANLINE + 1;
+		long hash = FNV_OFFSET;
+		for (int i = 0; i < CPUEmulator.ROW_WORDS; i++) {
+			int word = ram[address + i];
+			hash = (hash ^ (word & 0xFF)) * FNV_PRIME;
+			hash = (hash ^ (word >>> 8 & 0xFF)) * FNV_PRIME;
+			//bit 0 of a word is the leftmost pixel and 1 is black, in the PNG the leftmost pixel
+			// is the highest bit and 0 is black
+			int pixels = ~Integer.reverse(word) >>> 16;
+			this.scanlines[offset + 2 * i] = (byte) (pixels >>> 8);
+			this.scanlines[offset + 2 * i + 1] = (byte) pixels;
+		}
+		if (hash == this.rowHashes[row] && !this.first) {
+			return false;
+		}
+		this.rowHashes[row] = hash;
+		return true;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //a 1 bit grayscale PNG of the encoded rows, only the compression is done for
+	 * the whole frame
+	 * @Date 13:39 2026/10/18
+	 * @Param [file]
+	 * @return void
+	 **/
+	public void writePng(File file) throws IOException {
+		this.deflater.reset();
+		this.deflater.setInput(this.scanlines);
+		this.deflater.finish();
+		this.deflated.reset();
+		while (!this.deflater.finished()) {
+			int n = this.deflater.deflate(this.buffer);
+			this.deflated.write(this.buffer, 0, n);
+		}
+		try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+			out.write(PNG_SIGNATURE);
+			ByteArrayOutputStream header = new ByteArrayOutputStream();
+			DataOutputStream headerData = new DataOutputStream(header);
+			headerData.writeInt(CPUEmulator.SCREEN_WIDTH);
+			headerData.writeInt(CPUEmulator.SCREEN_HEIGHT);
+			//bit depth 1, grayscale, deflate, filter method 0, no interlace
+			headerData.write(new byte[]{1, 0, 0, 0, 0});
+			chunk(out, "IHDR", header.toByteArray());
+			chunk(out, "IDAT", this.deflated.toByteArray());
+			chunk(out, "IEND", new byte[0]);
+		}
+	}
+
+	private static void chunk(DataOutputStream out, String type, byte[] data) throws IOException {
+		byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+		CRC32 crc = new CRC32();
+		crc.update(typeBytes);
+		crc.update(data);
+		out.writeInt(data.length);
+		out.write(typeBytes);
+		out.write(data);
+		out.writeInt((int) crc.getValue());
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.out.println("Usage:java FrameExporter [-cycles n] [-every n] [-key code] "
+					+ "[-threshold n] [-warmup n] [-hashes file] [-png dir] program.hack");
+			return;
+		}
+		long maxCycles = Long.MAX_VALUE;
+		long every = DEFAULT_EVERY;
+		int key = 0;
+		int threshold = JitEmulator.DEFAULT_THRESHOLD;
+		long warmup = JitEmulator.DEFAULT_WARMUP;
+		String hashFile = null;
+		File pngDir = null;
+		String input = null;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-cycles") && i + 1 < args.length) {
+				maxCycles = Long.parseLong(args[++i]);
+			} else if (args[i].equals("-every") && i + 1 < args.length) {
+				every = Long.parseLong(args[++i]);
+			} else if (args[i].equals("-key") && i + 1 < args.length) {
+				key = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-threshold") && i + 1 < args.length) {
+				threshold = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-warmup") && i + 1 < args.length) {
+				warmup = Long.parseLong(args[++i]);
+			} else if (args[i].equals("-hashes") && i + 1 < args.length) {
+				hashFile = args[++i];
+			} else if (args[i].equals("-png") && i + 1 < args.length) {
+				pngDir = new File(args[++i]);
+			} else {
+				input = args[i];
+			}
+		}
+		if (input == null) {
+			throw new IllegalArgumentException("No program");
+		}
+		if (every <= 0) {
+			throw new IllegalArgumentException("-every must be positive");
+		}
+		if (pngDir != null && !pngDir.isDirectory() && !pngDir.mkdirs()) {
+			throw new IOException("Can't create " + pngDir);
+		}
+		JitEmulator emulator = new JitEmulator(HackProgram.load(new File(input)));
+		emulator.setThreshold(threshold);
+		emulator.setWarmup(warmup);
+		emulator.setDiagnostics(System.err::println);
+		emulator.getCpu().setKey(key);
+		//the hashes go to the console when nothing else is written
+		OutputStream hashOut = hashFile != null ? new FileOutputStream(hashFile) :
+				pngDir == null ? System.out : null;
+		PrintWriter hashes = hashOut == null ? null : new PrintWriter(hashOut);
+		FrameExporter exporter = new FrameExporter(pngDir, hashes);
+		long start = System.nanoTime();
+		int state = CPUEmulator.LIMIT;
+		long left = maxCycles;
+		while (state == CPUEmulator.LIMIT && left > 0) {
+			long step = Math.min(every, left);
+			state = emulator.run(step);
+			left -= step;
+			exporter.capture(emulator.getCpu());
+		}
+		long nanos = System.nanoTime() - start;
+		if (hashes != null) {
+			if (hashFile != null) {
+				hashes.close();
+			} else {
+				hashes.flush();
+			}
+		}
+		System.out.printf("%d frames, %d PNG files, %d rows encoded, %d cycles in %.2f ms%n",
+				exporter.getFrames(), exporter.getPngs(), exporter.getEncodedRows(),
+				emulator.getCpu().getCycles(), nanos / 1e6);
+	}
+}
@@ -0,0 +1,202 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:22
+ *
+ * The ROM of the Hack computer. Every word is decoded once when the program is loaded, so the
+ * emulator never looks at the bits again while running:
+ *   A-Command  the value itself, 0 to 32767
+ *   C-Command  negative: bit 31, the dispatch index of the comp in bits 0-4, dest in bits 6-8,
+ *              jump in bits 9-11 and the raw comp (with the a bit) in bits 12-18
+ */
+public class HackProgram {
+	public static final int ROM_SIZE = 32768;
+
+	//the dispatch indexes, one for every comp of the Hack machine language
+	public static final int ZERO = 0;
+	public static final int ONE = 1;
+	public static final int MINUS_ONE = 2;
+	public static final int D = 3;
+	public static final int A = 4;
+	public static final int M = 5;
+	public static final int NOT_D = 6;
+	public static final int NOT_A = 7;
+	public static final int NOT_M = 8;
+	public static final int NEG_D = 9;
+	public static final int NEG_A = 10;
+	public static final int NEG_M = 11;
+	public static final int D_PLUS_1 = 12;
+	public static final int A_PLUS_1 = 13;
+	public static final int M_PLUS_1 = 14;
+	public static final int D_MINUS_1 = 15;
+	public static final int A_MINUS_1 = 16;
+	public static final int M_MINUS_1 = 17;
+	public static final int D_PLUS_A = 18;
+	public static final int D_PLUS_M = 19;
+	public static final int D_MINUS_A = 20;
+	public static final int D_MINUS_M = 21;
+	public static final int A_MINUS_D = 22;
+	public static final int M_MINUS_D = 23;
+	public static final int D_AND_A = 24;
+	public static final int D_AND_M = 25;
+	public static final int D_OR_A = 26;
+	public static final int D_OR_M = 27;
+	//a comp outside the language, the ALU bits are computed one by one
+	public static final int ALU = 28;
+	//"@X, 0;JMP" at X, the usual end of a program: it loops forever and changes nothing
+	public static final int HALT = 29;
+	//the ROM after the program
+	public static final int END = 30;
+
+	public static final int C_COMMAND = 0x80000000;
+	public static final int DEST_M = 1;
+	public static final int DEST_D = 2;
+	public static final int DEST_A = 4;
+
+	//the comps (a c1 c2 c3 c4 c5 c6) in the order of the dispatch indexes
+	private static final int[] COMPS = {0b0101010, 0b0111111, 0b0111010, 0b0001100, 0b0110000,
+			0b1110000, 0b0001101, 0b0110001, 0b1110001, 0b0001111, 0b0110011, 0b1110011, 0b0011111,
+			0b0110111, 0b1110111, 0b0001110, 0b0110010, 0b1110010, 0b0000010, 0b1000010, 0b0010011,
+			0b1010011, 0b0000111, 0b1000111, 0b0000000, 0b1000000, 0b0010101, 0b1010101};
+	private static final int[] DISPATCH = new int[128];
+
+	static {
+		Arrays.fill(DISPATCH, ALU);
+		for (int i = 0; i < COMPS.length; i++) {
+			DISPATCH[COMPS[i]] = i;
+		}
+	}
+
+	private short[] words;
+	//one more entry than the ROM, so pc + 1 after the last word is still END
+	private int[] code;
+
+	public HackProgram(short[] words) {
+		if (words.length > ROM_SIZE) {
+			throw new IllegalArgumentException("the program has " + words.length
+					+ " words, the ROM has " + ROM_SIZE);
+		}
+		this.words = words;
+		this.code = new int[ROM_SIZE + 1];
+		Arrays.fill(this.code, C_COMMAND | END);
+		for (int i = 0; i < words.length; i++) {
+			this.code[i] = decode(words[i]);
+			if (isHalt(i)) {
+				this.code[i] = (this.code[i] & ~0x1F) | HALT;
+			}
+		}
+	}
+
+	public static int decode(short word) {
+		if (word >= 0) {
+			return word;
+		}
+		int comp = (word >>> 6) & 0x7F;
+		int dest = (word >>> 3) & 0x7;
+		int jump = word & 0x7;
+		return C_COMMAND | comp << 12 | jump << 9 | dest << 6 | DISPATCH[comp];
+	}
+
+	private boolean isHalt(int i) {
+		int op = this.code[i];
+		return i > 0 && op < 0 && jump(op) == 7 && dest(op) == 0 && this.code[i - 1] == i - 1;
+	}
+
+	public static int dispatch(int op) {
+		return op & 0x1F;
+	}
+
+	public static int dest(int op) {
+		return (op >>> 6) & 0x7;
+	}
+
+	public static int jump(int op) {
+		return (op >>> 9) & 0x7;
+	}
+
+	public static int comp(int op) {
+		return (op >>> 12) & 0x7F;
+	}
+
+	public short[] getWords() {
+		return words;
+	}
+
+	public int[] getCode() {
+		return code;
+	}
+
+	public int size() {
+		return words.length;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //load a .hack file, the text of 16 '0'/'1' per line, or the big endian words
+	 * written by the assembler with -binary
+	 * @Date 13:22 2026/10/18
+	 * @Param [file]
+	 * @return HackProgram
+	 **/
+	public static HackProgram load(File file) throws IOException {
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		boolean text = true;
+		for (byte b : bytes) {
+			if (b != '0' && b != '1' && b != '\r' && b != '\n') {
+				text = false;
+				break;
+			}
+		}
+		if (!text || isBinaryName(file)) {
+			if (bytes.length % 2 != 0) {
+				throw new IOException(file + " is neither text nor binary Hack code");
+			}
+			short[] words = new short[bytes.length / 2];
+			for (int i = 0; i < words.length; i++) {
+				words[i] = (short) ((bytes[2 * i] & 0xFF) << 8 | (bytes[2 * i + 1] & 0xFF));
+			}
+			return new HackProgram(words);
+		}
+		short[] words = new short[bytes.length / 17 + 1];
+		int count = 0;
+		int word = 0;
+		int bits = 0;
+		for (byte b : bytes) {
+			if (b == '0' || b == '1') {
+				word = word << 1 | (b - '0');
+				bits++;
+			} else if (b == '\n') {
+				if (bits != 0 && bits != 16) {
+					throw new IOException("line " + (count + 1) + " of " + file + " has " + bits
+							+ " bits");
+				}
+				if (bits == 16) {
+					if (count == words.length) {
+						words = Arrays.copyOf(words, count * 2);
+					}
+					words[count++] = (short) word;
+				}
+				word = 0;
+				bits = 0;
+			}
+		}
+		if (bits == 16) {
+			if (count == words.length) {
+				words = Arrays.copyOf(words, count + 1);
+			}
+			words[count++] = (short) word;
+		} else if (bits != 0) {
+			throw new IOException("the last line of " + file + " has " + bits + " bits");
+		}
+		return new HackProgram(Arrays.copyOf(words, count));
+	}
+
+	//a binary file may be all '0' and '1' bytes by chance, its name decides then
+	private static boolean isBinaryName(File file) {
+		return file.getName().endsWith(".bin");
+	}
+}
@@ -0,0 +1,426 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:36
+ *
+ * Skips the iterations of the loops which only wait: a path of at most MAX_LENGTH commands
+ * from a loop head back to it, through any blocks, calls and returns, which either changes
+ * nothing each time (polling KBD, which can't change while the program runs) or only counts a
+ * counter (D or a RAM word) up or down by one. One iteration is executed symbolically, with the
+ * counter as n: every value must be a constant or n + c, and every jump target a constant. The
+ * registers and words the iteration reads before writing must get the same constant back at the
+ * end, so every iteration does the same thing, only n changes. A jump which tests n + c goes the
+ * same way until n + c changes its sign, so the number of iterations which take the same path is
+ * known, they are skipped in one step and the cycles are added. The iteration which leaves the
+ * loop is left to the interpreter. A loop head is the target of a jump back whose address is
+ * loaded by the A-Command right before it, like the labels of the loops the VM translator writes.
+ */
+public class IdleLoops {
+	//the symbolic values: a constant, n + c, or unknown
+	private static final int CONSTANT = 0;
+	private static final int LINEAR = 1;
+	private static final int UNKNOWN = 2;
+	//the counter locations besides the RAM addresses
+	private static final int NO_COUNTER = -1;
+	private static final int D_COUNTER = -2;
+	//a loop which can't be skipped this many times is not tried again
+	private static final int MAX_FAILURES = 16;
+	//the longest iteration, a wait through a call and a return of the VM translator fits
+	private static final int MAX_LENGTH = 1024;
+
+	private HackProgram program;
+	private boolean[] heads;
+	private byte[] failures;
+	private long skippedCycles;
+	//the addresses of the commands of the last iteration executed, in order
+	private int[] path = new int[MAX_LENGTH];
+	private int length;
+	//the path got back to its start
+	private boolean closed;
+
+	//the state of the symbolic execution: the registers, whether they are read before written,
+	// the words written, the words read before written and the range of c
+	private int aKind;
+	private int aValue;
+	private int dKind;
+	private int dValue;
+	private boolean aRead;
+	private boolean dRead;
+	private boolean aWritten;
+	private boolean dWritten;
+	private HashMap<Integer, long[]> memory = new HashMap<>();
+	private HashMap<Integer, Integer> reads = new HashMap<>();
+	private int minC;
+	private int maxC;
+	//the jumps which test n + c: c, the jump bits and 1 if the jump is taken in this iteration
+	private ArrayList<int[]> tests = new ArrayList<>();
+
+	public IdleLoops(HackProgram program) {
+		this.program = program;
+		int[] code = program.getCode();
+		this.heads = new boolean[code.length];
+		this.failures = new byte[code.length];
+		for (int i = 1; i < program.size(); i++) {
+			int op = code[i];
+			if (op < 0 && HackProgram.jump(op) != 0 && code[i - 1] >= 0 && code[i - 1] <= i) {
+				this.heads[code[i - 1]] = true;
+			}
+		}
+	}
+
+	public long getSkippedCycles() {
+		return skippedCycles;
+	}
+
+	//the path of the last loop skipped, the first getLength() addresses are one iteration
+	public int[] getPath() {
+		return path;
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	//is pc a loop head worth trying? false after it failed too often
+	public boolean isLoop(int pc) {
+		return this.heads[pc] && this.failures[pc] < MAX_FAILURES;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //skip the iterations of the loop at pc which can be computed, the cpu must
+	 * be at pc. At most budget cycles are skipped, and the iteration which goes another way is
+	 * left to be executed, so the loop exits the normal way. A path which doesn't get back to
+	 * pc is not tried again.
+	 * @Date 13:36 2026/10/18
+	 * @Param [cpu, pc, budget]
+	 * @return long the skipped cycles
+	 **/
+	public long skip(CPUEmulator cpu, int pc, long budget) {
+		//no counter first: the loops which wait forever. It finds the path and what it reads.
+		if (execute(cpu, pc, NO_COUNTER)) {
+			return apply(cpu, pc, NO_COUNTER, budget);
+		}
+		if (!this.closed) {
+			this.failures[pc] = MAX_FAILURES;
+			return 0;
+		}
+		//the candidates for the counter are D and the words read first which come back one
+		// more or one less
+		boolean dMoves = this.dRead && this.dKind == CONSTANT
+				&& Math.abs(this.dValue - cpu.getD()) == 1;
+		int[] words = new int[this.reads.size()];
+		int n = 0;
+		for (Map.Entry<Integer, Integer> read : this.reads.entrySet()) {
+			long[] written = this.memory.get(read.getKey());
+			if (written != null && written[0] == CONSTANT
+					&& Math.abs(written[1] - read.getValue()) == 1) {
+				words[n++] = read.getKey();
+			}
+		}
+		if (dMoves && execute(cpu, pc, D_COUNTER)) {
+			return apply(cpu, pc, D_COUNTER, budget);
+		}
+		for (int i = 0; i < n; i++) {
+			if (execute(cpu, pc, words[i])) {
+				return apply(cpu, pc, words[i], budget);
+			}
+		}
+		this.failures[pc]++;
+		return 0;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //execute one iteration from pc symbolically, following the jumps, until it
+	 * gets back to pc. The jumps which test n + c go the way they go for the n in the counter
+	 * now. False if a value or a jump target is unknown, the path doesn't get back to pc or the
+	 * iteration doesn't leave the same state, see stable().
+	 * @Date 13:36 2026/10/18
+	 * @Param [cpu, pc, counter]
+	 * @return boolean
+	 **/
+	private boolean execute(CPUEmulator cpu, int pc, int counter) {
+		int[] code = this.program.getCode();
+		int[] ram = cpu.getRam();
+		int n = counter == D_COUNTER ? cpu.getD() : counter >= 0 ? ram[counter] : 0;
+		this.closed = false;
+		this.length = 0;
+		this.tests.clear();
+		this.aKind = CONSTANT;
+		this.aValue = cpu.getA();
+		this.aRead = false;
+		this.aWritten = false;
+		this.dKind = counter == D_COUNTER ? LINEAR : CONSTANT;
+		this.dValue = counter == D_COUNTER ? 0 : cpu.getD();
+		this.dRead = false;
+		this.dWritten = false;
+		this.memory.clear();
+		this.reads.clear();
+		this.minC = 0;
+		this.maxC = 0;
+		int i = pc;
+		do {
+			if (this.length == MAX_LENGTH) {
+				return false;
+			}
+			this.path[this.length++] = i;
+			int op = code[i];
+			if (op >= 0) {
+				this.aKind = CONSTANT;
+				this.aValue = op;
+				this.aWritten = true;
+				i++;
+				continue;
+			}
+			int dispatch = HackProgram.dispatch(op);
+			if (dispatch == HackProgram.HALT || dispatch == HackProgram.END) {
+				return false;
+			}
+			int comp = HackProgram.comp(op);
+			boolean useM = (comp & 0x40) != 0;
+			boolean useA = !useM && usesY(comp);
+			boolean useD = usesX(comp);
+			if (useA && !this.aWritten) {
+				this.aRead = true;
+			}
+			if (useD && !this.dWritten) {
+				this.dRead = true;
+			}
+			//the address of M must be known
+			if (useM || (HackProgram.dest(op) & HackProgram.DEST_M) != 0) {
+				if (this.aKind != CONSTANT) {
+					return false;
+				}
+				if (!this.aWritten) {
+					this.aRead = true;
+				}
+			}
+			int address = this.aValue & 0x7FFF;
+			int mKind = CONSTANT;
+			int mValue = 0;
+			if (useM) {
+				long[] written = this.memory.get(address);
+				if (written != null) {
+					mKind = (int) written[0];
+					mValue = (int) written[1];
+				} else if (address == counter) {
+					mKind = LINEAR;
+				} else {
+					mValue = ram[address];
+					this.reads.put(address, mValue);
+				}
+			}
+			long value = compute(dispatch, comp, mKind, mValue);
+			int kind = (int) (value >> 32);
+			int result = (int) value;
+			if (kind == UNKNOWN) {
+				return false;
+			}
+			if (kind == LINEAR) {
+				this.minC = Math.min(this.minC, result);
+				this.maxC = Math.max(this.maxC, result);
+			}
+			int dest = HackProgram.dest(op);
+			if ((dest & HackProgram.DEST_M) != 0 && address < CPUEmulator.KBD) {
+				this.memory.put(address, new long[]{kind, result});
+			}
+			if ((dest & HackProgram.DEST_D) != 0) {
+				this.dKind = kind;
+				this.dValue = result;
+				this.dWritten = true;
+			}
+			//the jump goes to the A before the command
+			int jump = HackProgram.jump(op);
+			boolean taken = false;
+			if (jump != 0) {
+				taken = takes(jump, kind == LINEAR ? n + result : result);
+				if (kind == LINEAR) {
+					this.tests.add(new int[]{result, jump, taken ? 1 : 0});
+				}
+				if (taken && this.aKind != CONSTANT) {
+					return false;
+				}
+				if (taken && !this.aWritten) {
+					this.aRead = true;
+				}
+			}
+			int next = taken ? this.aValue & 0x7FFF : i + 1;
+			if ((dest & HackProgram.DEST_A) != 0) {
+				this.aKind = kind;
+				this.aValue = result;
+				this.aWritten = true;
+			}
+			i = next;
+		} while (i != pc);
+		this.closed = true;
+		return stable(cpu, counter);
+	}
+
+	//the jump bits are j1 (< 0), j2 (== 0) and j3 (> 0)
+	private static boolean takes(int jump, long value) {
+		return (jump & (value < 0 ? 4 : value == 0 ? 2 : 1)) != 0;
+	}
+
+	//c5 (f) with c1-c4: x is used unless zx, y unless zy
+	private static boolean usesX(int comp) {
+		return (comp & 0x20) == 0;
+	}
+
+	private static boolean usesY(int comp) {
+		return (comp & 0x08) == 0;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the value of the comp: the kind in the high int, the constant or c in the
+	 * low int. A linear value only goes through the comps which keep it n + c.
+	 * @Date 13:36 2026/10/18
+	 * @Param [dispatch, comp, mKind, mValue]
+	 * @return long
+	 **/
+	private long compute(int dispatch, int comp, int mKind, int mValue) {
+		int yKind = (comp & 0x40) != 0 ? mKind : this.aKind;
+		int y = (comp & 0x40) != 0 ? mValue : this.aValue;
+		int xKind = this.dKind;
+		int x = this.dValue;
+		boolean usesX = usesX(comp);
+		boolean usesY = usesY(comp);
+		if ((!usesX || xKind == CONSTANT) && (!usesY || yKind == CONSTANT)) {
+			return value(CONSTANT, CPUEmulator.alu(comp, x, y, y));
+		}
+		switch (dispatch) {
+			case HackProgram.D:
+				return value(xKind, x);
+			case HackProgram.A:
+			case HackProgram.M:
+				return value(yKind, y);
+			case HackProgram.D_PLUS_1:
+				return value(xKind, x + 1);
+			case HackProgram.D_MINUS_1:
+				return value(xKind, x - 1);
+			case HackProgram.A_PLUS_1:
+			case HackProgram.M_PLUS_1:
+				return value(yKind, y + 1);
+			case HackProgram.A_MINUS_1:
+			case HackProgram.M_MINUS_1:
+				return value(yKind, y - 1);
+			case HackProgram.D_PLUS_A:
+			case HackProgram.D_PLUS_M:
+				return xKind == LINEAR && yKind == LINEAR ? value(UNKNOWN, 0) :
+						value(LINEAR, x + y);
+			case HackProgram.D_MINUS_A:
+			case HackProgram.D_MINUS_M:
+				return xKind == LINEAR && yKind == CONSTANT ? value(LINEAR, x - y) :
+						value(UNKNOWN, 0);
+			case HackProgram.A_MINUS_D:
+			case HackProgram.M_MINUS_D:
+				return yKind == LINEAR && xKind == CONSTANT ? value(LINEAR, y - x) :
+						value(UNKNOWN, 0);
+			default:
+				return value(UNKNOWN, 0);
+		}
+	}
+
+	private static long value(int kind, int value) {
+		if (kind == UNKNOWN) {
+			return (long) UNKNOWN << 32;
+		}
+		return (long) kind << 32 | (value & 0xFFFFFFFFL);
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //whatever the block reads before writing must be the same after it, except
+	 * the counter, which must move by one
+	 * @Date 13:36 2026/10/18
+	 * @Param [cpu, counter]
+	 * @return boolean
+	 **/
+	private boolean stable(CPUEmulator cpu, int counter) {
+		if (this.aRead && (this.aKind != CONSTANT || this.aValue != cpu.getA())) {
+			return false;
+		}
+		if (counter == D_COUNTER) {
+			if (this.dKind != LINEAR || Math.abs(this.dValue) != 1) {
+				return false;
+			}
+		} else if (this.dRead && (this.dKind != CONSTANT || this.dValue != cpu.getD())) {
+			return false;
+		}
+		for (Map.Entry<Integer, Integer> read : this.reads.entrySet()) {
+			long[] written = this.memory.get(read.getKey());
+			if (written != null && (written[0] != CONSTANT || written[1] != read.getValue())) {
+				return false;
+			}
+		}
+		if (counter >= 0) {
+			long[] written = this.memory.get(counter);
+			return written != null && written[0] == LINEAR && Math.abs(written[1]) == 1;
+		}
+		//without a counter nothing can be linear
+		return true;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the first iteration j > 0 in which the jump which tests v + j * delta goes
+	 * the other way, -1 if none. The sign of the value changes at most twice: when it gets to 0
+	 * and after it.
+	 * @Date 13:36 2026/10/18
+	 * @Param [v, delta, jump, taken]
+	 * @return long
+	 **/
+	private static long firstChange(long v, int delta, int jump, boolean taken) {
+		long zero = -v * delta;
+		long first = -1;
+		for (long j : new long[]{1, zero, zero + 1}) {
+			if (j > 0 && takes(jump, v + j * delta) != taken && (first < 0 || j < first)) {
+				first = j;
+			}
+		}
+		return first;
+	}
+
+	private long apply(CPUEmulator cpu, int pc, int counter, long budget) {
+		int[] ram = cpu.getRam();
+		int length = this.length;
+		int n = counter == D_COUNTER ? cpu.getD() : counter >= 0 ? ram[counter] : 0;
+		int delta = counter == D_COUNTER ? this.dValue : counter >= 0 ?
+				(int) this.memory.get(counter)[1] : 0;
+		//the iterations which take the same path
+		long k = budget / length;
+		for (int[] test : this.tests) {
+			long change = firstChange((long) n + test[0], delta, test[1], test[2] != 0);
+			if (change >= 0) {
+				k = Math.min(k, change);
+			}
+		}
+		if (k <= 0) {
+			return 0;
+		}
+		//n + c must stay in 16 bits for all the skipped iterations
+		long last = n + (k - 1) * delta;
+		if (Math.min(n, last) + this.minC < Short.MIN_VALUE
+				|| Math.max(n, last) + this.maxC > Short.MAX_VALUE) {
+			return 0;
+		}
+		int end = (int) last;
+		for (Map.Entry<Integer, long[]> entry : this.memory.entrySet()) {
+			cpu.poke(entry.getKey(), evaluate(entry.getValue()[0], (int) entry.getValue()[1], end));
+		}
+		int a = this.aWritten ? evaluate(this.aKind, this.aValue, end) : cpu.getA();
+		int d = this.dWritten ? evaluate(this.dKind, this.dValue, end) : cpu.getD();
+		long cycles = k * length;
+		cpu.setRegisters(pc, a, d, cpu.getCycles() + cycles);
+		this.skippedCycles += cycles;
+		return cycles;
+	}
+
+	private static int evaluate(long kind, int value, int n) {
+		return kind == LINEAR ? n + value : value;
+	}
+}
@@ -0,0 +1,421 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:25
+ *
+ * Runs the program by the CPUEmulator, which counts the jumps to every address. After the warmup
+ * cycles, a block which has been jumped to threshold times is compiled with the blocks around it
+ * by BlockCompiler, which takes microseconds, so it is done on the running thread. From then on
+ * the interpreter stops at the jumps into the region and the compiled class runs it, from block
+ * to block, until the pc leaves it. The code which is not hot runs in the interpreter without
+ * coming back here. A region which can't be compiled stays interpreted. The ROM of the Hack
+ * computer can't be written, so a compiled region is never out of date; a jump to a computed
+ * address is counted like any other jump. The loop heads IdleLoops skips are left out of the
+ * regions, so they are still skipped.
+ */
+public class JitEmulator {
+	public static final int DEFAULT_THRESHOLD = 1000;
+	//compiling a region takes microseconds, so the hot blocks are compiled from the start
+	public static final long DEFAULT_WARMUP = 0;
+
+	private CPUEmulator cpu;
+	private BasicBlocks blocks;
+	private BlockCompiler compiler;
+	//the blocks are jumped to this many times before they are compiled, 0 never compiles
+	private int threshold = DEFAULT_THRESHOLD;
+	private long warmup = DEFAULT_WARMUP;
+	//the cycles run by this emulator
+	private long ran;
+	//the lengths are computed at the first entry of the block, -1 before
+	private int[] lengths;
+	//the jumps to every address until the interpreter stops there, null until the first run
+	private int[] countdown;
+	//the blocks in a region compiled before, or failed to
+	private boolean[] tried;
+	private int[] registers = new int[3];
+	//the region every block is run by, null if it is interpreted
+	private CompiledBlock[] compiled;
+	private int compiledCount;
+	//runs the same program by the interpreter only, and is compared after every compiled block
+	private CPUEmulator shadow;
+	private Profiler profiler;
+	//skip the iterations of the loops which only wait or count
+	private IdleLoops idleLoops;
+	private boolean fastForward = true;
+
+	public JitEmulator(HackProgram program) {
+		this.cpu = new CPUEmulator(program);
+		this.blocks = new BasicBlocks(program);
+		this.compiler = new BlockCompiler(program, this.blocks);
+		this.idleLoops = new IdleLoops(program);
+		this.lengths = new int[program.getCode().length];
+		Arrays.fill(this.lengths, -1);
+		this.tried = new boolean[program.getCode().length];
+		this.compiled = new CompiledBlock[program.getCode().length];
+	}
+
+	public CPUEmulator getCpu() {
+		return cpu;
+	}
+
+	public void setThreshold(int threshold) {
+		this.threshold = threshold;
+		this.countdown = null;
+	}
+
+	//the cycles to run before the first block is compiled
+	public void setWarmup(long warmup) {
+		this.warmup = warmup;
+		this.countdown = null;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //check every run of a compiled region against the interpreter: the registers
+	 * and the whole RAM are compared, so this is much slower than the interpreter alone
+	 * @Date 13:25 2026/10/18
+	 * @Param [verify]
+	 * @return void
+	 **/
+	public void setVerify(boolean verify) {
+		if (verify) {
+			this.shadow = new CPUEmulator(this.cpu.getProgram());
+			System.arraycopy(this.cpu.getRam(), 0, this.shadow.getRam(), 0,
+					this.cpu.getRam().length);
+			this.shadow.setRegisters(this.cpu.getPc(), this.cpu.getA(), this.cpu.getD(),
+					this.cpu.getCycles());
+		} else {
+			this.shadow = null;
+		}
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //continue from a snapshot of the same program. The compiled regions stay, so
+	 * the runs which restore the same snapshot again and again don't compile again.
+	 * @Date 13:40 2026/10/18
+	 * @Param [snapshot]
+	 * @return void
+	 **/
+	public void restore(Snapshot snapshot) {
+		snapshot.restore(this.cpu);
+		if (this.shadow != null) {
+			snapshot.restore(this.shadow);
+		}
+	}
+
+	//told why a region failed to compile, it stays interpreted either way
+	public void setDiagnostics(Consumer<String> diagnostics) {
+		this.compiler.setDiagnostics(diagnostics);
+	}
+
+	//report every block to the profiler, null stops profiling
+	public void setProfiler(Profiler profiler) {
+		this.profiler = profiler;
+		this.countdown = null;
+	}
+
+	//false runs every iteration of the idle loops as well, the result is the same
+	public void setFastForward(boolean fastForward) {
+		this.fastForward = fastForward;
+		this.countdown = null;
+	}
+
+	public int getCompiledCount() {
+		return compiledCount;
+	}
+
+	public long getSkippedCycles() {
+		return idleLoops.getSkippedCycles();
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //like CPUEmulator.run(): run until the program halts or maxCycles more
+	 * commands are executed. The interpreter runs the cold code in long stretches and only comes
+	 * back at a jump target whose countdown ran out, see CPUEmulator.run(maxCycles, countdown).
+	 * A block of a compiled region runs only when the whole block fits in the cycles left, so
+	 * the limit is exact.
+	 * @Date 13:25 2026/10/18
+	 * @Param [maxCycles]
+	 * @return int LIMIT, HALTED or END_OF_PROGRAM
+	 **/
+	public int run(long maxCycles) {
+		CPUEmulator cpu = this.cpu;
+		int[] countdown = countdown();
+		//the pure interpreter when there is nothing to stop for
+		int[] stops = this.threshold > 0 || this.fastForward || this.profiler != null ?
+				countdown : null;
+		long remaining = maxCycles;
+		while (remaining > 0) {
+			int pc = cpu.getPc();
+			if (countdown[pc] < 0) {
+				long cycles = enter(pc, remaining);
+				if (cycles > 0) {
+					remaining -= cycles;
+					this.ran += cycles;
+					continue;
+				}
+			}
+			long stretch = remaining;
+			boolean warming = this.threshold > 0 && this.ran < this.warmup;
+			if (warming) {
+				stretch = Math.min(stretch, this.warmup - this.ran);
+			}
+			long before = cpu.getCycles();
+			int state = cpu.run(stretch, stops);
+			long steps = cpu.getCycles() - before;
+			remaining -= steps;
+			this.ran += steps;
+			if (this.profiler != null) {
+				report(pc, steps, cpu.getPc());
+			}
+			if (this.shadow != null) {
+				this.shadow.run(steps);
+			}
+			if (state != CPUEmulator.LIMIT) {
+				return state;
+			}
+			if (warming && this.ran >= this.warmup) {
+				//count the jumps for the compiler from now on
+				this.countdown = null;
+				countdown = countdown();
+				stops = countdown;
+			}
+		}
+		return CPUEmulator.LIMIT;
+	}
+
+	//the countdowns of the jump targets, made again after the settings changed
+	private int[] countdown() {
+		if (this.countdown == null) {
+			this.countdown = new int[this.cpu.getProgram().getCode().length];
+			int hot = this.profiler != null ? 0 : this.threshold > 0 && this.ran >= this.warmup ?
+					this.threshold : DEFAULT_THRESHOLD;
+			Arrays.fill(this.countdown, hot);
+			for (int pc = 0; pc < this.countdown.length; pc++) {
+				if (this.compiled[pc] != null) {
+					this.countdown[pc] = 0;
+				}
+			}
+		}
+		return this.countdown;
+	}
+
+	private int length(int pc) {
+		int length = this.lengths[pc];
+		if (length < 0) {
+			length = this.blocks.length(pc);
+			this.lengths[pc] = length;
+		}
+		return length;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the interpreter stopped at the jump target pc: skip the idle loop or run
+	 * the compiled region there, or compile the region of the block, and set when to stop at pc
+	 * again. The profiler and the verifier stop at every jump, so the region runs one block.
+	 * @Date 14:19 2026/10/18
+	 * @Param [pc, remaining]
+	 * @return long the cycles executed, 0 if the interpreter goes on at pc
+	 **/
+	private long enter(int pc, long remaining) {
+		CPUEmulator cpu = this.cpu;
+		int length = length(pc);
+		boolean profiling = this.profiler != null;
+		if (length == 0) {
+			//HALT or the end of the program, the interpreter tells which
+			this.countdown[pc] = Integer.MAX_VALUE;
+			return 0;
+		}
+		if (this.fastForward && this.idleLoops.isLoop(pc)) {
+			//try again next time, the loop is not tried any more after too many failures
+			this.countdown[pc] = 0;
+			long skipped = this.idleLoops.skip(cpu, pc, remaining);
+			if (skipped > 0) {
+				if (profiling) {
+					int loop = this.idleLoops.getLength();
+					this.profiler.loop(this.idleLoops.getPath(), loop, skipped / loop);
+				}
+				if (this.shadow != null) {
+					verify(pc, skipped);
+				}
+				return skipped;
+			}
+		}
+		if (this.compiled[pc] == null && this.threshold > 0 && this.ran >= this.warmup
+				&& !this.tried[pc]) {
+			compile(pc);
+		}
+		CompiledBlock block = this.compiled[pc];
+		if (block == null) {
+			//warming up, not compiling at all, or the region failed to compile
+			if (this.countdown[pc] < 0) {
+				this.countdown[pc] = profiling ? 0 : Integer.MAX_VALUE;
+			}
+			return 0;
+		}
+		this.countdown[pc] = 0;
+		if (remaining < length) {
+			return 0;
+		}
+		int[] registers = this.registers;
+		registers[0] = cpu.getA();
+		registers[1] = cpu.getD();
+		int next = block.run(pc, cpu.getRam(), cpu.getDirtyRows(), registers,
+				profiling || this.shadow != null ? length :
+						(int) Math.min(remaining, Integer.MAX_VALUE));
+		cpu.setRegisters(next, registers[0], registers[1], cpu.getCycles() + registers[2]);
+		if (profiling) {
+			this.profiler.block(pc, length, registers[2] / length, next);
+		}
+		if (this.shadow != null) {
+			verify(pc, registers[2]);
+		}
+		//the jump out of the region counts like a jump of the interpreter
+		this.countdown[next]--;
+		return registers[2];
+	}
+
+	//the interpreter ran steps commands from pc and stopped at next: report the blocks in between
+	private void report(int pc, long steps, int next) {
+		while (steps > 0) {
+			int length = length(pc);
+			if (steps < length) {
+				this.profiler.partial(pc, (int) steps);
+				return;
+			}
+			steps -= length;
+			this.profiler.block(pc, length, 1, steps == 0 ? next : pc + length);
+			pc += length;
+		}
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //compile the region of pc without the idle loops and stop at its blocks. It
+	 * may share blocks with the regions before, they stay in the older region.
+	 * @Date 14:55 2026/10/18
+	 * @Param [pc]
+	 * @return void
+	 **/
+	private void compile(int pc) {
+		int[] region = this.compiler.region(pc, this.fastForward ? this.idleLoops : null);
+		for (int block : region) {
+			this.tried[block] = true;
+		}
+		CompiledBlock compiled = this.compiler.compile(region);
+		if (compiled == null) {
+			return;
+		}
+		for (int block : region) {
+			if (this.compiled[block] == null) {
+				this.compiled[block] = compiled;
+				this.compiledCount++;
+				this.countdown[block] = 0;
+			}
+		}
+	}
+
+	private void verify(int pc, long cycles) {
+		this.shadow.run(cycles);
+		CPUEmulator cpu = this.cpu;
+		if (cpu.getPc() != this.shadow.getPc() || cpu.getA() != this.shadow.getA()
+				|| cpu.getD() != this.shadow.getD()) {
+			throw new IllegalStateException(String.format("block %d: pc=%d A=%d D=%d, the "
+							+ "interpreter has pc=%d A=%d D=%d", pc, cpu.getPc(), cpu.getA(),
+					cpu.getD(), this.shadow.getPc(), this.shadow.getA(), this.shadow.getD()));
+		}
+		int address = Arrays.mismatch(cpu.getRam(), this.shadow.getRam());
+		if (address >= 0) {
+			throw new IllegalStateException(String.format("block %d: RAM[%d]=%d, the interpreter"
+					+ " has %d", pc, address, cpu.peek(address), this.shadow.peek(address)));
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.out.println("Usage:java JitEmulator [-cycles n] [-threshold n] [-warmup n] "
+					+ "[-key code] [-verify] [-exact] [-dump from-to] [-save snapshot] "
+					+ "program.hack|-restore snapshot");
+			return;
+		}
+		long maxCycles = Long.MAX_VALUE;
+		int threshold = DEFAULT_THRESHOLD;
+		long warmup = DEFAULT_WARMUP;
+		boolean verify = false;
+		boolean exact = false;
+		//the key of a restored snapshot stays unless -key is given
+		int key = -1;
+		File save = null;
+		File restore = null;
+		int dumpFrom = 0;
+		int dumpTo = 15;
+		String input = null;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-cycles") && i + 1 < args.length) {
+				maxCycles = Long.parseLong(args[++i]);
+			} else if (args[i].equals("-threshold") && i + 1 < args.length) {
+				threshold = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-warmup") && i + 1 < args.length) {
+				warmup = Long.parseLong(args[++i]);
+			} else if (args[i].equals("-key") && i + 1 < args.length) {
+				key = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-verify")) {
+				verify = true;
+			} else if (args[i].equals("-exact")) {
+				exact = true;
+			} else if (args[i].equals("-save") && i + 1 < args.length) {
+				save = new File(args[++i]);
+			} else if (args[i].equals("-restore") && i + 1 < args.length) {
+				restore = new File(args[++i]);
+			} else if (args[i].equals("-dump") && i + 1 < args.length) {
+				String[] range = args[++i].split("-");
+				dumpFrom = Integer.parseInt(range[0]);
+				dumpTo = Integer.parseInt(range[range.length - 1]);
+			} else {
+				input = args[i];
+			}
+		}
+		if (input == null && restore == null) {
+			throw new IllegalArgumentException("No program");
+		}
+		Snapshot snapshot = restore == null ? null : Snapshot.open(restore);
+		JitEmulator emulator = new JitEmulator(snapshot != null ? snapshot.getProgram() :
+				HackProgram.load(new File(input)));
+		if (snapshot != null) {
+			emulator.restore(snapshot);
+		}
+		//before the shadow of -verify copies the RAM
+		if (key >= 0) {
+			emulator.getCpu().setKey(key);
+		}
+		emulator.setThreshold(threshold);
+		emulator.setWarmup(warmup);
+		emulator.setVerify(verify);
+		emulator.setFastForward(!exact);
+		emulator.setDiagnostics(System.err::println);
+		CPUEmulator cpu = emulator.getCpu();
+		long startCycles = cpu.getCycles();
+		long start = System.nanoTime();
+		int state = emulator.run(maxCycles);
+		long nanos = System.nanoTime() - start;
+		if (save != null) {
+			Snapshot.save(cpu, save);
+		}
+		String[] states = {"cycle limit", "halted", "end of program"};
+		System.out.printf("%s at pc=%d after %d cycles, %.2f ms, %.1f M instructions/s, "
+						+ "%d blocks compiled, %d cycles skipped%n", states[state], cpu.getPc(),
+				cpu.getCycles(), nanos / 1e6, (cpu.getCycles() - startCycles) * 1e3
+						/ Math.max(nanos, 1), emulator.getCompiledCount(),
+				emulator.getSkippedCycles());
+		for (int i = dumpFrom; i <= dumpTo; i++) {
+			System.out.println("RAM[" + i + "] = " + cpu.peek(i));
+		}
+	}
+}
@@ -0,0 +1,193 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:29
+ *
+ * The labels written by "Assembler -labels", one "address<TAB>label" per line. Every ROM address
+ * belongs to the last label at or before it. The labels without '$' are functions, the VM
+ * translator names the labels inside a function "function$label", so an address belongs to the
+ * last function before it as well. The labels starting with "VM." are the shared routines of the
+ * VM translator: VM.call.n and VM.call save the frame of a call and jump to the function,
+ * VM.return, the comparisons and VM.halt. They name their addresses like functions, but a jump to
+ * one is not a call.
+ */
+public class LabelMap {
+	private String[] labels;
+	private String[] functions;
+	//the index of the label and the function of every ROM address, -1 before the first one
+	private int[] labelOf = new int[HackProgram.ROM_SIZE + 1];
+	private int[] functionOf = new int[HackProgram.ROM_SIZE + 1];
+	//the function which starts at the address, -1 if none or a routine
+	private int[] functionAt = new int[HackProgram.ROM_SIZE + 1];
+	//a label inside a function is here: the VM translator puts one ("function$$ret.N") after every
+	// call, so only such an address can be a return address
+	private boolean[] returnSite = new boolean[HackProgram.ROM_SIZE + 1];
+	//the functions which are the call routines of the VM translator, by id
+	private boolean[] callRoutines;
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //an empty map, all the addresses belong to "(start)"
+	 * @Date 13:29 2026/10/18
+	 * @Param []
+	 * @return
+	 **/
+	public LabelMap() {
+		this(new int[0], new String[0]);
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the addresses are sorted, of the labels at the same address the first
+	 * function names the address, the first label if there is no function. The return label of
+	 * the call before a function is at the entry of the function, the entry belongs to the
+	 * function, not to the caller.
+	 * @Date 13:29 2026/10/18
+	 * @Param [addresses, names]
+	 * @return
+	 **/
+	public LabelMap(int[] addresses, String[] names) {
+		Arrays.fill(this.functionAt, -1);
+		this.labels = names;
+		ArrayList<String> functions = new ArrayList<>();
+		ArrayList<Boolean> callRoutines = new ArrayList<>();
+		HashMap<String, Integer> functionIds = new HashMap<>();
+		int label = -1;
+		int function = -1;
+		int next = 0;
+		for (int address = 0; address < this.labelOf.length; address++) {
+			for (; next < names.length && addresses[next] <= address; next++) {
+				String name = names[next];
+				if (next == 0 || addresses[next - 1] != addresses[next]
+						|| this.labels[label].indexOf('$') >= 0 && name.indexOf('$') < 0) {
+					label = next;
+				}
+				boolean routine = name.startsWith("VM.");
+				if (name.indexOf('$') < 0) {
+					Integer id = functionIds.get(name);
+					if (id == null) {
+						id = functions.size();
+						functions.add(name);
+						callRoutines.add(name.equals("VM.call") || name.startsWith("VM.call."));
+						functionIds.put(name, id);
+					}
+					function = id;
+					if (!routine) {
+						this.functionAt[addresses[next]] = id;
+					}
+				} else if (!routine) {
+					this.returnSite[addresses[next]] = true;
+				}
+			}
+			this.labelOf[address] = label;
+			this.functionOf[address] = function;
+		}
+		this.functions = functions.toArray(new String[0]);
+		this.callRoutines = new boolean[this.functions.length];
+		for (int id = 0; id < this.callRoutines.length; id++) {
+			this.callRoutines[id] = callRoutines.get(id);
+		}
+	}
+
+	public static LabelMap load(File file) throws IOException {
+		ArrayList<Integer> addresses = new ArrayList<>();
+		ArrayList<String> names = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				int tab = line.indexOf('\t');
+				if (tab > 0) {
+					addresses.add(Integer.parseInt(line.substring(0, tab)));
+					names.add(line.substring(tab + 1));
+				}
+			}
+		}
+		//the file is sorted by the assembler, sort again in case it was edited
+		Integer[] order = new Integer[names.size()];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (x, y) -> Integer.compare(addresses.get(x), addresses.get(y)));
+		int[] sortedAddresses = new int[order.length];
+		String[] sortedNames = new String[order.length];
+		for (int i = 0; i < order.length; i++) {
+			sortedAddresses[i] = addresses.get(order[i]);
+			sortedNames[i] = names.get(order[i]);
+		}
+		return new LabelMap(sortedAddresses, sortedNames);
+	}
+
+	public String labelOf(int address) {
+		int label = this.labelOf[address];
+		return label < 0 ? "(start)" : this.labels[label];
+	}
+
+	public String functionOf(int address) {
+		return functionName(this.functionOf[address]);
+	}
+
+	public int functionIdOf(int address) {
+		return functionOf[address];
+	}
+
+	public int functionAt(int address) {
+		return functionAt[address];
+	}
+
+	public boolean isReturnSite(int address) {
+		return returnSite[address];
+	}
+
+	//the address is in VM.call.n or VM.call, which go on to the function called
+	public boolean isCallRoutine(int address) {
+		int function = this.functionOf[address];
+		return function >= 0 && this.callRoutines[function];
+	}
+
+	public String functionName(int id) {
+		return id < 0 ? "(start)" : functions[id];
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //check the label file: the entry of every function must be named by the
+	 * function, in the flat profile and in the profile by function, prints the entries which are
+	 * not and fails if there are any
+	 * @Date 14:37 2026/10/18
+	 * @Param [args]
+	 * @return void
+	 **/
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.out.println("Usage:java LabelMap program.labels");
+			return;
+		}
+		LabelMap labels = load(new File(args[0]));
+		int entries = 0;
+		int wrong = 0;
+		for (int address = 0; address < HackProgram.ROM_SIZE; address++) {
+			int function = labels.functionAt(address);
+			if (function < 0) {
+				continue;
+			}
+			entries++;
+			String name = labels.functionName(function);
+			if (!labels.labelOf(address).equals(name) || !labels.functionOf(address).equals(name)) {
+				System.out.println(address + "\t" + name + " is named " + labels.labelOf(address)
+						+ " in " + labels.functionOf(address));
+				wrong++;
+			}
+		}
+		System.out.println(entries + " functions, " + wrong + " named by another label");
+		if (wrong > 0) {
+			System.exit(1);
+		}
+	}
+}
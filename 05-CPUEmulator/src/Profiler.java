@@ -0,0 +1,317 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:29
+ *
+ * Counts how many times every ROM address is executed, and how many cycles every call stack
+ * takes. The JitEmulator reports every block it runs: a block has no jump inside, so all of its
+ * commands run once per entry, and counting the entries is enough. A call is an unconditional
+ * jump to a function whose return address is a label inside a function, a return is a jump to the
+ * return address on the top of the stack. A call of the VM translator jumps to its call routine,
+ * which jumps to the function: the call site gives the return address and the jump of the routine
+ * gives the function.
+ */
+public class Profiler {
+	private static final int MAX_DEPTH = 4096;
+
+	private HackProgram program;
+	private LabelMap labels;
+	//the times the block entered at pc ran to its end, and its length
+	private long[] entries;
+	private int[] lengths;
+	//the commands counted one by one, by address: the blocks cut by the cycle limit and the
+	// skipped iterations of the idle loops
+	private long[] partial;
+
+	//the call stack: the node of every frame and its return address
+	private int[] frames = new int[MAX_DEPTH];
+	private int[] returns = new int[MAX_DEPTH];
+	private int depth;
+	private int truncated;
+	//the return address of a call into a call routine of the VM translator, until the routine
+	// jumps to the function. -1 if none.
+	private int pendingReturn = -1;
+	//the tree of the call stacks, node 0 is the root
+	private int[] parents = new int[64];
+	private int[] functions = new int[64];
+	private long[] cycles = new long[64];
+	private int nodeCount;
+	private HashMap<Long, Integer> children = new HashMap<>();
+	//the leaf node found last time, most blocks run in the function of the frame or the last leaf
+	private int lastParent = -1;
+	private int lastFunction;
+	private int lastLeaf;
+
+	public Profiler(HackProgram program, LabelMap labels) {
+		this.program = program;
+		this.labels = labels;
+		int size = program.getCode().length;
+		this.entries = new long[size];
+		this.lengths = new int[size];
+		this.partial = new long[size];
+		this.frames[0] = node(-1, -1);
+	}
+
+	private int node(int parent, int function) {
+		if (this.nodeCount == this.parents.length) {
+			this.parents = Arrays.copyOf(this.parents, this.nodeCount * 2);
+			this.functions = Arrays.copyOf(this.functions, this.nodeCount * 2);
+			this.cycles = Arrays.copyOf(this.cycles, this.nodeCount * 2);
+		}
+		this.parents[this.nodeCount] = parent;
+		this.functions[this.nodeCount] = function;
+		return this.nodeCount++;
+	}
+
+	private int child(int parent, int function) {
+		long key = (long) parent << 32 | (function & 0xFFFFFFFFL);
+		Integer node = this.children.get(key);
+		if (node == null) {
+			node = node(parent, function);
+			this.children.put(key, node);
+		}
+		return node;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the block entered at pc ran times times to its end, then went to next
+	 * @Date 13:29 2026/10/18
+	 * @Param [pc, length, times, next]
+	 * @return void
+	 **/
+	public void block(int pc, int length, long times, int next) {
+		this.entries[pc] += times;
+		this.lengths[pc] = length;
+		int frame = this.frames[this.depth];
+		int function = this.labels.functionIdOf(pc);
+		int node = frame;
+		if (function != this.functions[frame]) {
+			if (frame != this.lastParent || function != this.lastFunction) {
+				this.lastParent = frame;
+				this.lastFunction = function;
+				this.lastLeaf = child(frame, function);
+			}
+			node = this.lastLeaf;
+		}
+		this.cycles[node] += times * length;
+		int end = pc + length;
+		if (next == end) {
+			return;
+		}
+		int callee = this.labels.functionAt(next);
+		boolean always = HackProgram.jump(this.program.getCode()[end - 1]) == 7;
+		if (always && this.labels.isReturnSite(end) && this.labels.isCallRoutine(next)) {
+			this.pendingReturn = end;
+		} else if (callee >= 0 && always && this.pendingReturn >= 0
+				&& this.labels.isCallRoutine(pc)) {
+			call(frame, callee, this.pendingReturn);
+			this.pendingReturn = -1;
+		} else if (callee >= 0 && always && this.labels.isReturnSite(end)) {
+			call(frame, callee, end);
+		} else if (this.depth > 0 && next == this.returns[this.depth]) {
+			this.depth--;
+		}
+	}
+
+	private void call(int frame, int callee, int returnAddress) {
+		if (this.depth + 1 < MAX_DEPTH) {
+			this.depth++;
+			this.frames[this.depth] = child(frame, callee);
+			this.returns[this.depth] = returnAddress;
+		} else {
+			this.truncated++;
+		}
+	}
+
+	//the first steps commands of the block entered at pc ran, then the cycle limit came
+	public void partial(int pc, int steps) {
+		for (int i = pc; i < pc + steps; i++) {
+			this.partial[i]++;
+		}
+		this.cycles[this.frames[this.depth]] += steps;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the first length commands of path, one iteration of an idle loop, ran times
+	 * times more and got back to where they started. The cycles go to the function of the loop,
+	 * also those of the calls in the iteration.
+	 * @Date 14:41 2026/10/18
+	 * @Param [path, length, times]
+	 * @return void
+	 **/
+	public void loop(int[] path, int length, long times) {
+		for (int i = 0; i < length; i++) {
+			this.partial[path[i]] += times;
+		}
+		this.cycles[this.frames[this.depth]] += times * length;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the number of executions of every ROM address
+	 * @Date 13:29 2026/10/18
+	 * @Param []
+	 * @return long[]
+	 **/
+	public long[] getCounts() {
+		long[] counts = this.partial.clone();
+		for (int pc = 0; pc < this.entries.length; pc++) {
+			if (this.entries[pc] != 0) {
+				for (int i = pc; i < pc + this.lengths[pc]; i++) {
+					counts[i] += this.entries[pc];
+				}
+			}
+		}
+		return counts;
+	}
+
+	private String path(int node) {
+		if (this.parents[node] < 0) {
+			return "(start)";
+		}
+		return path(this.parents[node]) + ";" + this.labels.functionName(this.functions[node]);
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the flat profile: the cycles of every label, and the self and total cycles
+	 * of every function. Total counts the cycles of the stacks the function is in, once even
+	 * if it is in a stack more than once.
+	 * @Date 13:29 2026/10/18
+	 * @Param [writer]
+	 * @return void
+	 **/
+	public void writeFlatProfile(PrintWriter writer) {
+		long[] counts = getCounts();
+		long sum = 0;
+		HashMap<String, long[]> byLabel = new HashMap<>();
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] != 0) {
+				sum += counts[i];
+				byLabel.computeIfAbsent(this.labels.labelOf(i), k -> new long[1])[0] += counts[i];
+			}
+		}
+		HashMap<String, long[]> byFunction = new HashMap<>();
+		for (int node = 0; node < this.nodeCount; node++) {
+			if (this.cycles[node] == 0) {
+				continue;
+			}
+			String self = this.parents[node] < 0 ? "(start)" :
+					this.labels.functionName(this.functions[node]);
+			byFunction.computeIfAbsent(self, k -> new long[2])[0] += this.cycles[node];
+			ArrayList<String> seen = new ArrayList<>();
+			for (int n = node; n >= 0; n = this.parents[n]) {
+				String name = this.parents[n] < 0 ? "(start)" :
+						this.labels.functionName(this.functions[n]);
+				if (!seen.contains(name)) {
+					seen.add(name);
+					byFunction.computeIfAbsent(name, k -> new long[2])[1] += this.cycles[node];
+				}
+			}
+		}
+		writer.printf("%d cycles%n%n", sum);
+		writer.printf("%14s %7s %7s  %s%n", "cycles", "%", "cum%", "label");
+		long cumulative = 0;
+		for (String label : sorted(byLabel, 0)) {
+			long count = byLabel.get(label)[0];
+			cumulative += count;
+			writer.printf("%14d %7.2f %7.2f  %s%n", count, percent(count, sum),
+					percent(cumulative, sum), label);
+		}
+		writer.printf("%n%14s %7s %14s %7s  %s%n", "self", "%", "total", "%", "function");
+		for (String function : sorted(byFunction, 0)) {
+			long[] count = byFunction.get(function);
+			writer.printf("%14d %7.2f %14d %7.2f  %s%n", count[0], percent(count[0], sum),
+					count[1], percent(count[1], sum), function);
+		}
+		if (this.truncated > 0) {
+			writer.printf("%n%d calls deeper than %d are not in the stacks%n", this.truncated,
+					MAX_DEPTH);
+		}
+	}
+
+	private static String[] sorted(HashMap<String, long[]> map, int index) {
+		String[] keys = map.keySet().toArray(new String[0]);
+		Arrays.sort(keys, (x, y) -> map.get(x)[index] != map.get(y)[index] ?
+				Long.compare(map.get(y)[index], map.get(x)[index]) : x.compareTo(y));
+		return keys;
+	}
+
+	private static double percent(long count, long sum) {
+		return sum == 0 ? 0 : count * 100.0 / sum;
+	}
+
+	//one "frame;frame;frame cycles" line per stack, the input of flamegraph.pl and speedscope
+	public void writeCollapsedStacks(PrintWriter writer) {
+		for (int node = 0; node < this.nodeCount; node++) {
+			if (this.cycles[node] != 0) {
+				writer.print(path(node));
+				writer.print(' ');
+				writer.println(this.cycles[node]);
+			}
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.out.println("Usage:java Profiler [-cycles n] [-threshold n] [-warmup n] "
+					+ "[-labels file] [-out prefix] program.hack");
+			return;
+		}
+		long maxCycles = Long.MAX_VALUE;
+		int threshold = JitEmulator.DEFAULT_THRESHOLD;
+		long warmup = JitEmulator.DEFAULT_WARMUP;
+		File labelFile = null;
+		String prefix = null;
+		String input = null;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-cycles") && i + 1 < args.length) {
+				maxCycles = Long.parseLong(args[++i]);
+			} else if (args[i].equals("-threshold") && i + 1 < args.length) {
+				threshold = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-warmup") && i + 1 < args.length) {
+				warmup = Long.parseLong(args[++i]);
+			} else if (args[i].equals("-labels") && i + 1 < args.length) {
+				labelFile = new File(args[++i]);
+			} else if (args[i].equals("-out") && i + 1 < args.length) {
+				prefix = args[++i];
+			} else {
+				input = args[i];
+			}
+		}
+		if (input == null) {
+			throw new IllegalArgumentException("No program");
+		}
+		if (prefix == null) {
+			int dot = input.lastIndexOf('.');
+			prefix = dot > 0 ? input.substring(0, dot) : input;
+		}
+		HackProgram program = HackProgram.load(new File(input));
+		LabelMap labels = labelFile == null ? new LabelMap() : LabelMap.load(labelFile);
+		JitEmulator emulator = new JitEmulator(program);
+		emulator.setThreshold(threshold);
+		emulator.setWarmup(warmup);
+		emulator.setDiagnostics(System.err::println);
+		Profiler profiler = new Profiler(program, labels);
+		emulator.setProfiler(profiler);
+		long start = System.nanoTime();
+		emulator.run(maxCycles);
+		long nanos = System.nanoTime() - start;
+		try (PrintWriter writer = new PrintWriter(prefix + ".profile", "UTF-8")) {
+			profiler.writeFlatProfile(writer);
+		}
+		try (PrintWriter writer = new PrintWriter(prefix + ".folded", "UTF-8")) {
+			profiler.writeCollapsedStacks(writer);
+		}
+		System.out.printf("%d cycles in %.2f ms, profile in %s.profile and %s.folded%n",
+				emulator.getCpu().getCycles(), nanos / 1e6, prefix, prefix);
+	}
+}
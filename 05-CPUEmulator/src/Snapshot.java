@@ -0,0 +1,127 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:40
+ *
+ * The state of a Hack computer in a file: PC, A, D, the cycles, the RAM and the ROM. The file is
+ * memory mapped, so saving and restoring only copies the words between the mapping and the
+ * arrays. An opened snapshot can be restored any number of times, the tests which need the same
+ * booted OS restore it instead of running the boot again.
+ *
+ * The file is big endian: "HACKSNAP", the version, PC, A, D as ints, the cycles as a long, the
+ * number of ROM words, then the 32K words of RAM and the ROM words.
+ */
+public class Snapshot {
+	private static final byte[] MAGIC = "HACKSNAP".getBytes(StandardCharsets.US_ASCII);
+	private static final int VERSION = 1;
+	private static final int HEADER = 40;
+	private static final int RAM_WORDS = HackProgram.ROM_SIZE;
+
+	private MappedByteBuffer buffer;
+	private HackProgram program;
+
+	private Snapshot(MappedByteBuffer buffer, HackProgram program) {
+		this.buffer = buffer;
+		this.program = program;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //write the state of cpu into file, which is created or replaced
+	 * @Date 13:40 2026/10/18
+	 * @Param [cpu, file]
+	 * @return void
+	 **/
+	public static void save(CPUEmulator cpu, File file) throws IOException {
+		short[] rom = cpu.getProgram().getWords();
+		long size = HEADER + 2L * (RAM_WORDS + rom.length);
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			 FileChannel channel = raf.getChannel()) {
+			raf.setLength(size);
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			buffer.put(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.putInt(cpu.getPc());
+			buffer.putInt(cpu.getA());
+			buffer.putInt(cpu.getD());
+			buffer.putLong(cpu.getCycles());
+			buffer.putInt(rom.length);
+			ShortBuffer words = buffer.position(HEADER).asShortBuffer();
+			int[] ram = cpu.getRam();
+			for (int i = 0; i < RAM_WORDS; i++) {
+				words.put((short) ram[i]);
+			}
+			words.put(rom);
+		}
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //map a snapshot file, the ROM is read at once, the rest when it is restored
+	 * @Date 13:40 2026/10/18
+	 * @Param [file]
+	 * @return Snapshot
+	 **/
+	public static Snapshot open(File file) throws IOException {
+		MappedByteBuffer buffer;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+			 FileChannel channel = raf.getChannel()) {
+			if (channel.size() < HEADER + 2L * RAM_WORDS) {
+				throw new IOException(file + " is not a Hack snapshot");
+			}
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		byte[] magic = new byte[MAGIC.length];
+		buffer.get(0, magic);
+		if (!Arrays.equals(magic, MAGIC)) {
+			throw new IOException(file + " is not a Hack snapshot");
+		}
+		if (buffer.getInt(8) != VERSION) {
+			throw new IOException(file + " is a snapshot of version " + buffer.getInt(8));
+		}
+		int romWords = buffer.getInt(32);
+		if (romWords < 0 || romWords > HackProgram.ROM_SIZE
+				|| buffer.capacity() != HEADER + 2L * (RAM_WORDS + romWords)) {
+			throw new IOException(file + " is truncated");
+		}
+		short[] rom = new short[romWords];
+		buffer.slice(HEADER + 2 * RAM_WORDS, 2 * romWords).asShortBuffer().get(rom);
+		return new Snapshot(buffer, new HackProgram(rom));
+	}
+
+	//the program in the snapshot, an emulator of it can restore the snapshot
+	public HackProgram getProgram() {
+		return program;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //put the registers and the RAM of the snapshot into cpu, which must run the
+	 * same ROM. The whole screen is marked dirty.
+	 * @Date 13:40 2026/10/18
+	 * @Param [cpu]
+	 * @return void
+	 **/
+	public void restore(CPUEmulator cpu) {
+		if (cpu.getProgram() != this.program
+				&& !Arrays.equals(cpu.getProgram().getWords(), this.program.getWords())) {
+			throw new IllegalArgumentException("the snapshot is of another program");
+		}
+		ShortBuffer words = this.buffer.slice(HEADER, 2 * RAM_WORDS).asShortBuffer();
+		int[] ram = cpu.getRam();
+		for (int i = 0; i < RAM_WORDS; i++) {
+			ram[i] = words.get(i);
+		}
+		cpu.setRegisters(this.buffer.getInt(12), this.buffer.getInt(16), this.buffer.getInt(20),
+				this.buffer.getLong(24));
+		Arrays.fill(cpu.getDirtyRows(), -1L);
+	}
+}
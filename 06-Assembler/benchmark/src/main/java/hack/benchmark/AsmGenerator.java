@@ -0,0 +1,112 @@
+package hack.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:20
+ *
+ * Generates a synthetic Hack program. The same arguments always give the same program, so the
+ * numbers of two runs can be compared.
+ */
+public class AsmGenerator {
+	private static final String[] DESTS = {"", "M=", "D=", "MD=", "A=", "AM=", "AD=", "AMD="};
+	private static final String[] COMPS = {"0", "1", "-1", "D", "A", "!D", "!A", "-D", "-A", "D+1",
+			"A+1", "D-1", "A-1", "D+A", "D-A", "A-D", "D&A", "D|A", "M", "!M", "-M", "M+1", "M-1",
+			"D+M", "D-M", "M-D", "D&M", "D|M"};
+	private static final String[] JUMPS = {"JGT", "JEQ", "JGE", "JLT", "JNE", "JLE", "JMP"};
+	private static final String[] PREDEFINED = {"SP", "LCL", "ARG", "THIS", "THAT", "R13", "R14",
+			"R15", "SCREEN", "KBD"};
+
+	private long seed = 42;
+	//the number of instructions, labels are not counted
+	private int size = 10000;
+	//labels per instruction
+	private double labelDensity = 0.05;
+	//the number of different variables
+	private int variables = 200;
+	//the part of the lines which are comments, and the part of the commands with a trailing one
+	private double commentRatio = 0.2;
+
+	public AsmGenerator seed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	public AsmGenerator size(int size) {
+		this.size = size;
+		return this;
+	}
+
+	public AsmGenerator labelDensity(double labelDensity) {
+		this.labelDensity = labelDensity;
+		return this;
+	}
+
+	public AsmGenerator variables(int variables) {
+		this.variables = variables;
+		return this;
+	}
+
+	public AsmGenerator commentRatio(double commentRatio) {
+		this.commentRatio = commentRatio;
+		return this;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //about half of the commands are A-Commands: a label before a jump, a
+	 * variable, a predefined symbol or a number. Every label is defined once, and the labels
+	 * are spread evenly, so there are forward and backward references.
+	 * @Date 13:20 2026/10/18
+	 * @Param []
+	 * @return java.lang.String
+	 **/
+	public String generate() {
+		SplittableRandom random = new SplittableRandom(this.seed);
+		int labels = Math.max(1, (int) Math.round(this.size * this.labelDensity));
+		StringBuilder builder = new StringBuilder(this.size * 16);
+		int nextLabel = 0;
+		int i = 0;
+		while (i < this.size) {
+			if (nextLabel < labels && i >= (long) nextLabel * this.size / labels) {
+				builder.append("(LOOP_").append(nextLabel++).append(")\n");
+			}
+			if (random.nextDouble() < this.commentRatio) {
+				builder.append("// generated comment ").append(i).append('\n');
+			}
+			double kind = random.nextDouble();
+			if (kind < this.labelDensity * 4 && i + 1 < this.size) {
+				builder.append("    @LOOP_").append(random.nextInt(labels)).append('\n');
+				builder.append("    D;").append(JUMPS[random.nextInt(JUMPS.length)]);
+				i += 2;
+			} else if (kind < 0.3 && this.variables > 0) {
+				builder.append("    @var_").append(random.nextInt(this.variables));
+				i++;
+			} else if (kind < 0.4) {
+				builder.append("    @").append(PREDEFINED[random.nextInt(PREDEFINED.length)]);
+				i++;
+			} else if (kind < 0.5) {
+				builder.append("    @").append(random.nextInt(32768));
+				i++;
+			} else {
+				String dest = DESTS[1 + random.nextInt(DESTS.length - 1)];
+				builder.append("    ").append(dest).append(COMPS[random.nextInt(COMPS.length)]);
+				i++;
+			}
+			if (random.nextDouble() < this.commentRatio) {
+				builder.append(" // trailing");
+			}
+			builder.append('\n');
+		}
+		while (nextLabel < labels) {
+			builder.append("(LOOP_").append(nextLabel++).append(")\n");
+		}
+		return builder.toString();
+	}
+
+	public byte[] generateBytes() {
+		return generate().getBytes(StandardCharsets.US_ASCII);
+	}
+}
@@ -0,0 +1,101 @@
+package hack.benchmark;
+
+import hack.assembler.Assembler;
+import hack.assembler.OutputFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:20
+ *
+ * Assembles the whole program, from the source to the .hack text.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AssemblerBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class Output {
+		File hackFile;
+
+		@Setup(Level.Trial)
+		public void create() throws IOException {
+			this.hackFile = File.createTempFile("bench", ".hack");
+		}
+
+		@TearDown(Level.Trial)
+		public void delete() throws IOException {
+			Files.deleteIfExists(this.hackFile.toPath());
+		}
+	}
+
+	//drops the output, so only the assembler is measured
+	private static class NullChannel implements WritableByteChannel {
+		@Override
+		public int write(ByteBuffer src) {
+			int n = src.remaining();
+			src.position(src.limit());
+			return n;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	@Benchmark
+	public int twoPass(ProgramState state, Output output) throws IOException {
+		Assembler assembler = new Assembler(state.asmFile, output.hackFile, OutputFormat.TEXT);
+		assembler.firstScanFile();
+		assembler.secondScanFile();
+		return assembler.getInstructionCount();
+	}
+
+	@Benchmark
+	public int singleScan(ProgramState state, Output output) throws IOException {
+		Assembler assembler = new Assembler(state.asmFile, output.hackFile, OutputFormat.TEXT);
+		assembler.singleScanFile();
+		return assembler.getInstructionCount();
+	}
+
+	@Benchmark
+	public int parallel(ProgramState state, Output output) throws IOException {
+		Assembler assembler = new Assembler(state.asmFile, output.hackFile, OutputFormat.TEXT);
+		assembler.parallelScanFile();
+		return assembler.getInstructionCount();
+	}
+
+	//no file at all, the program is assembled from memory into nowhere
+	@Benchmark
+	public int inMemory(ProgramState state) throws IOException {
+		Assembler assembler = new Assembler(OutputFormat.TEXT);
+		assembler.assemble(ByteBuffer.wrap(state.program), new NullChannel());
+		return assembler.getInstructionCount();
+	}
+}
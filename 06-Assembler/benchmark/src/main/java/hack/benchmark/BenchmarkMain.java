@@ -0,0 +1,36 @@
+package hack.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:20
+ *
+ * The JMH main with -prof gc on by default, so every run reports the allocation rate
+ * (gc.alloc.rate.norm is the bytes allocated per operation). Any -prof given on the command line
+ * replaces it.
+ */
+public class BenchmarkMain {
+	public static void main(String[] args) throws CommandLineOptionException, RunnerException,
+			IOException {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListProfilers()
+				|| commandLine.shouldListResultFormats()) {
+			org.openjdk.jmh.Main.main(args);
+			return;
+		}
+		OptionsBuilder options = new OptionsBuilder();
+		options.parent(commandLine);
+		if (commandLine.getProfilers().isEmpty()) {
+			options.addProfiler(GCProfiler.class);
+		}
+		new Runner(options.build()).run();
+	}
+}
@@ -0,0 +1,106 @@
+package hack.benchmark;
+
+import hack.assembler.Code;
+import hack.assembler.CommandType;
+import hack.assembler.Lexer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:20
+ *
+ * Encodes every C-Command of the program, the commands are lexed before the measurement.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodeBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class Commands {
+		Code code = new Code();
+		ByteBuffer buffer;
+		//the dest, comp and jump of every C-Command as Strings and as offsets
+		String[] dests;
+		String[] comps;
+		String[] jumps;
+		int[] ranges;
+
+		@Setup(Level.Trial)
+		public void lex(ProgramState state) {
+			this.buffer = ByteBuffer.wrap(state.program);
+			Lexer lexer = new Lexer(this.buffer);
+			ArrayList<int[]> list = new ArrayList<>();
+			while (lexer.advance()) {
+				if (lexer.getCommandType() == CommandType.C_Command) {
+					list.add(new int[]{lexer.destStart(), lexer.destEnd(), lexer.compStart(),
+							lexer.compEnd(), lexer.jumpStart(), lexer.jumpEnd()});
+				}
+			}
+			int n = list.size();
+			this.dests = new String[n];
+			this.comps = new String[n];
+			this.jumps = new String[n];
+			this.ranges = new int[n * 6];
+			for (int i = 0; i < n; i++) {
+				int[] range = list.get(i);
+				System.arraycopy(range, 0, this.ranges, i * 6, 6);
+				this.dests[i] = lexer.text(range[0], range[1]);
+				this.comps[i] = lexer.text(range[2], range[3]);
+				this.jumps[i] = lexer.text(range[4], range[5]);
+			}
+		}
+	}
+
+	//the old way: three binary Strings joined together
+	@Benchmark
+	public int stringConcat(Commands commands) {
+		Code code = commands.code;
+		int hash = 0;
+		for (int i = 0; i < commands.dests.length; i++) {
+			String word = "111" + code.comp(commands.comps[i]) + code.dest(commands.dests[i])
+					+ code.jump(commands.jumps[i]);
+			hash += word.hashCode();
+		}
+		return hash;
+	}
+
+	@Benchmark
+	public int encodeStrings(Commands commands) {
+		Code code = commands.code;
+		int sum = 0;
+		for (int i = 0; i < commands.dests.length; i++) {
+			sum += code.encode(commands.dests[i], commands.comps[i], commands.jumps[i]);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public int encodeBytes(Commands commands) {
+		Code code = commands.code;
+		ByteBuffer buffer = commands.buffer;
+		int[] ranges = commands.ranges;
+		int sum = 0;
+		for (int i = 0; i < ranges.length; i += 6) {
+			sum += code.encode(buffer, ranges[i], ranges[i + 1], ranges[i + 2], ranges[i + 3],
+					ranges[i + 4], ranges[i + 5]);
+		}
+		return sum;
+	}
+}
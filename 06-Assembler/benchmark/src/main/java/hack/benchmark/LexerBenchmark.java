@@ -0,0 +1,66 @@
+package hack.benchmark;
+
+import hack.assembler.CommandType;
+import hack.assembler.Lexer;
+import hack.assembler.Parser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:20
+ *
+ * Splits the program into commands and their fields, nothing is encoded.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LexerBenchmark {
+
+	//the line based Parser of the two-pass assembler, it makes Strings of every field
+	@Benchmark
+	public void parser(ProgramState state, Blackhole blackhole) throws IOException {
+		try (FileInputStream fis = new FileInputStream(state.asmFile)) {
+			Parser parser = new Parser(state.asmFile, fis);
+			do {
+				parser.advance();
+				CommandType commandType = parser.getCommandType();
+				if (commandType == CommandType.C_Command) {
+					blackhole.consume(parser.dest());
+					blackhole.consume(parser.comp());
+					blackhole.consume(parser.jump());
+				} else {
+					blackhole.consume(parser.getCurrentCommand());
+				}
+			} while (parser.hasMoreCommands());
+		}
+	}
+
+	//the Lexer of the single scan assembler, it only gives the offsets of the fields
+	@Benchmark
+	public void lexer(ProgramState state, Blackhole blackhole) {
+		Lexer lexer = new Lexer(ByteBuffer.wrap(state.program));
+		while (lexer.advance()) {
+			if (lexer.getCommandType() == CommandType.C_Command) {
+				blackhole.consume(lexer.destStart());
+				blackhole.consume(lexer.compEnd());
+				blackhole.consume(lexer.jumpEnd());
+			} else {
+				blackhole.consume(lexer.symbolEnd());
+			}
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package hack.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:20
+ *
+ * The generated program shared by the benchmarks, in memory and in a temporary .asm file for the
+ * benchmarks that read files.
+ */
+@State(Scope.Benchmark)
+public class ProgramState {
+	@Param({"10000", "100000"})
+	public int size;
+	@Param({"0.05"})
+	public double labelDensity;
+	@Param({"200"})
+	public int variables;
+	@Param({"0.2"})
+	public double commentRatio;
+
+	public byte[] program;
+	public File asmFile;
+
+	@Setup(Level.Trial)
+	public void generate() throws IOException {
+		this.program = new AsmGenerator().size(this.size).labelDensity(this.labelDensity)
+				.variables(this.variables).commentRatio(this.commentRatio).generateBytes();
+		this.asmFile = File.createTempFile("bench", ".asm");
+		Files.write(this.asmFile.toPath(), this.program);
+	}
+
+	@TearDown(Level.Trial)
+	public void delete() throws IOException {
+		Files.deleteIfExists(this.asmFile.toPath());
+	}
+}
@@ -0,0 +1,117 @@
+package hack.benchmark;
+
+import hack.assembler.CommandType;
+import hack.assembler.Lexer;
+import hack.assembler.SymbolTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:20
+ *
+ * Looks up and allocates every symbol used by the A-Commands of the program.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SymbolTableBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class Symbols {
+		ByteBuffer buffer;
+		//the symbols in the order of use, as Strings and as offsets
+		String[] symbols;
+		int[] ranges;
+		//the labels and their addresses
+		String[] labels;
+		int[] labelAddresses;
+		//a table which has every symbol already
+		SymbolTable filled;
+
+		@Setup(Level.Trial)
+		public void collect(ProgramState state) {
+			this.buffer = ByteBuffer.wrap(state.program);
+			Lexer lexer = new Lexer(this.buffer);
+			ArrayList<String> symbols = new ArrayList<>();
+			ArrayList<int[]> ranges = new ArrayList<>();
+			ArrayList<String> labels = new ArrayList<>();
+			ArrayList<Integer> labelAddresses = new ArrayList<>();
+			while (lexer.advance()) {
+				if (lexer.getCommandType() == CommandType.A_Command && !lexer.isDigitSymbol()) {
+					symbols.add(lexer.symbol());
+					ranges.add(new int[]{lexer.symbolStart(), lexer.symbolEnd()});
+				} else if (lexer.getCommandType() == CommandType.L_Command) {
+					labels.add(lexer.symbol());
+					labelAddresses.add(lexer.getAddress());
+				}
+			}
+			this.symbols = symbols.toArray(new String[0]);
+			this.ranges = new int[ranges.size() * 2];
+			for (int i = 0; i < ranges.size(); i++) {
+				this.ranges[i * 2] = ranges.get(i)[0];
+				this.ranges[i * 2 + 1] = ranges.get(i)[1];
+			}
+			this.labels = labels.toArray(new String[0]);
+			this.labelAddresses = labelAddresses.stream().mapToInt(Integer::intValue).toArray();
+			this.filled = new SymbolTable();
+			fill(this.filled);
+			for (String symbol : this.symbols) {
+				this.filled.getOrAllocate(symbol);
+			}
+		}
+
+		void fill(SymbolTable symbolTable) {
+			for (int i = 0; i < this.labels.length; i++) {
+				symbolTable.addEntry(this.labels[i], this.labelAddresses[i]);
+			}
+		}
+	}
+
+	@Benchmark
+	public int lookupString(Symbols symbols) {
+		int sum = 0;
+		for (String symbol : symbols.symbols) {
+			sum += symbols.filled.getAddress(symbol);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public int lookupBytes(Symbols symbols) {
+		int[] ranges = symbols.ranges;
+		int sum = 0;
+		for (int i = 0; i < ranges.length; i += 2) {
+			sum += symbols.filled.getAddress(symbols.buffer, ranges[i], ranges[i + 1]);
+		}
+		return sum;
+	}
+
+	//a new table every time: the labels are added, then the variables are allocated at first use
+	@Benchmark
+	public int allocate(Symbols symbols) {
+		SymbolTable symbolTable = new SymbolTable();
+		symbols.fill(symbolTable);
+		int[] ranges = symbols.ranges;
+		int sum = 0;
+		for (int i = 0; i < ranges.length; i += 2) {
+			sum += symbolTable.getOrAllocate(symbols.buffer, ranges[i], ranges[i + 1]);
+		}
+		return sum;
+	}
+}
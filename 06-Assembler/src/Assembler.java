@@ -1,10 +1,24 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * @Author HuangChuan
  * @Create in 2021/12/04 15:27
  */
-public class Assembler {
+public class Assembler implements Closeable {
+	//the files smaller than this are assembled in one chunk by parallelScanFile()
+	private static final int PARALLEL_THRESHOLD = 1 << 20;
 	//store compiling file
 	private File file;
 	//store compiled file
@@ -12,9 +26,22 @@ public class Assembler {
 	private Parser parser;
 	private Code code;
 	private SymbolTable symbolTable;
-	private int freeVarAddress = 16;
-	//the stream to read/write the program file
-	BufferedWriter bufferedWriter;
+	//write the encoded words into the compiled file
+	private HackWriter hackWriter;
+	//the hackWriter is on binFile and opened by the constructor, so close() closes it
+	private boolean ownsWriter;
+	private OutputFormat format;
+	//print every command and its binary form, it is slow on big programs so it is off by default
+	private boolean echo;
+	//the listing file, null if we needn't it
+	private File listingFile;
+	//what optimizedScanFile() removed, the report is null before it ran
+	private String optimizerReport;
+	private int removedCount;
+	//when incrementalScanFile() patched the output, the symbol table is empty. The changed
+	// chunks, null for the cached ones, and the cache are kept for writeLabels().
+	private Chunk[] patchedChunks;
+	private AssemblyCache patchedCache;
 
 	/*
 	 * @Author HuangChuan
@@ -25,17 +52,168 @@ public class Assembler {
 	 * @return
 	 **/
 	public Assembler(File file) throws IOException {
+		this(file, OutputFormat.TEXT);
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the text format is written into xxxcmp.hack, the binary rom image is written
+	 * into xxxcmp.bin, and the object file is written into xxxcmp.hobj
+	 * @Date 13:06 2026/10/18
+	 * @Param [file, format]
+	 * @return
+	 **/
+	public Assembler(File file, OutputFormat format) throws IOException {
+		this(file, defaultBinFile(file, format), format);
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //write the compiled file into binFile instead of the default path
+	 * @Date 13:17 2026/10/18
+	 * @Param [file, binFile, format]
+	 * @return
+	 **/
+	public Assembler(File file, File binFile, OutputFormat format) throws IOException {
+		this(format);
 		this.file = file;
+		this.binFile = binFile;
+		if (format != OutputFormat.OBJECT) {
+			this.hackWriter = new HackWriter(this.binFile, format);
+			this.ownsWriter = true;
+		}
+	}
+
+	private static File defaultBinFile(File file, OutputFormat format) {
 		String fileName = file.getName();
-		String binFilePath = file.getParent() + "\\" +
-				fileName.substring(0, fileName.indexOf(".")) + "cmp" +
-				".hack";
-		this.bufferedWriter =
-				new BufferedWriter(new OutputStreamWriter(new FileOutputStream(binFilePath)));
+		int dot = fileName.lastIndexOf(".");
+		String baseName = dot < 0 ? fileName : fileName.substring(0, dot);
+		return new File(file.getAbsoluteFile().getParentFile(), baseName + "cmp" +
+				(format == OutputFormat.TEXT ? ".hack" : format == OutputFormat.BINARY ? ".bin" :
+						".hobj"));
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the assembler without files, it is used by the assemble() methods which read
+	 * and write streams
+	 * @Date 13:14 2026/10/18
+	 * @Param [format]
+	 * @return
+	 **/
+	public Assembler(OutputFormat format) {
+		this.format = format;
 		this.code = new Code();
 		this.symbolTable = new SymbolTable();
 	}
 
+	public void setEcho(boolean echo) {
+		this.echo = echo;
+	}
+
+	public void setListingFile(File listingFile) {
+		this.listingFile = listingFile;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //Code has no state, so many assemblers can share one
+	 * @Date 13:15 2026/10/18
+	 * @Param [code]
+	 * @return void
+	 **/
+	public void setCode(Code code) {
+		this.code = code;
+	}
+
+	public File getBinFile() {
+		return binFile;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //write the addresses of the labels after the program is assembled, the
+	 * emulator's profiler reads them to name the addresses. An object file has no addresses
+	 * yet, the Linker knows them.
+	 * @Date 13:29 2026/10/18
+	 * @Param [labelFile]
+	 * @return void
+	 **/
+	public void writeLabels(File labelFile) throws IOException {
+		if (this.format == OutputFormat.OBJECT) {
+			throw new IllegalStateException("an object file has no label addresses");
+		}
+		if (this.patchedChunks != null) {
+			//the labels didn't move, they are read from the cache only now
+			int count = 0;
+			for (int i = 0; i < this.patchedChunks.length; i++) {
+				Chunk chunk = this.patchedChunks[i] != null ? this.patchedChunks[i]
+						: this.patchedCache.getChunk(i, true);
+				chunk.setBase(count);
+				chunk.addLabels(this.symbolTable);
+				count += chunk.getCount();
+			}
+			this.patchedChunks = null;
+			this.patchedCache = null;
+		}
+		this.symbolTable.writeLabels(labelFile);
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the number of instructions written into the compiled file
+	 * @Date 13:15 2026/10/18
+	 * @Param []
+	 * @return int
+	 **/
+	public int getInstructionCount() {
+		return this.hackWriter == null ? 0 : this.hackWriter.getCount();
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //a scan closes the compiled file when it succeeds. If the compiled file is
+	 * still open, the scan failed or never ran, so the file is closed and deleted instead of being
+	 * left half written.
+	 * @Date 14:07 2026/10/18
+	 * @Param []
+	 * @return void
+	 **/
+	@Override
+	public void close() throws IOException {
+		if (this.ownsWriter && !this.hackWriter.isClosed()) {
+			try {
+				this.hackWriter.close();
+			} finally {
+				Files.deleteIfExists(this.binFile.toPath());
+			}
+		}
+	}
+
+	//the removed commands of every peephole pattern and the total, one per line
+	public String getOptimizerReport() {
+		return optimizerReport;
+	}
+
+	public int getRemovedCount() {
+		return removedCount;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the listing is written by another thread, so it doesn't slow down the
+	 * encoding loop
+	 * @Date 13:07 2026/10/18
+	 * @Param []
+	 * @return ListingWriter
+	 **/
+	private ListingWriter openListing() throws IOException {
+		if (this.listingFile == null) {
+			return null;
+		}
+		return new ListingWriter(this.listingFile);
+	}
+
 	/*
 	 * @Author HuangChuan
 	 * @Description //the first scan of the file, collect the symbol of L-Command and add them to
@@ -46,17 +224,19 @@ public class Assembler {
 	 **/
 	public void firstScanFile() throws FileNotFoundException {
 		this.parser = new Parser(this.file, new FileInputStream(this.file));
-		do {
-			parser.advance();
-			CommandType commandType = parser.getCommandType();
-			if (commandType.equals(CommandType.L_Command)) {
-				String command = parser.getCurrentCommand().substring(1,
-						parser.getCurrentCommand().length() - 1);
-				if (!parser.isDigit(command)) {
-					this.symbolTable.addEntry(command, parser.getAddress());
+		try (Parser parser = this.parser) {
+			do {
+				parser.advance();
+				CommandType commandType = parser.getCommandType();
+				if (commandType.equals(CommandType.L_Command)) {
+					String command = parser.getCurrentCommand().substring(1,
+							parser.getCurrentCommand().length() - 1);
+					if (!parser.isDigit(command)) {
+						this.symbolTable.addEntry(command, parser.getAddress());
+					}
 				}
-			}
-		} while (parser.hasMoreCommands());
+			} while (parser.hasMoreCommands());
+		}
 	}
 
 	/*
@@ -69,53 +249,643 @@ public class Assembler {
 	 **/
 	public void secondScanFile() throws IOException {
 		this.parser = new Parser(this.file, new FileInputStream(this.file));
-		do {
-			parser.advance();
-			CommandType commandType = parser.getCommandType();
-			switch (commandType) {
+		//the listing writer thread is stopped and the files are closed when the scan fails too,
+		// the compiled file is closed by close()
+		try (Parser parser = this.parser; ListingWriter listingWriter = openListing()) {
+			do {
+				parser.advance();
+				CommandType commandType = parser.getCommandType();
+				switch (commandType) {
+					case A_Command:
+						String symbol = parser.getCurrentCommand().substring(1);
+						int address;
+						if (parser.isDigit(symbol)) {
+							address = Integer.parseInt(symbol);
+							symbol = null;
+						} else {
+							address = this.symbolTable.getOrAllocate(symbol);
+						}
+						if (this.echo) {
+							System.out.println(parser.getCurrentCommand() + "\t\t"
+									+ new String(toBinary(address)));
+						}
+						hackWriter.write(address);
+						if (listingWriter != null) {
+							listingWriter.add(parser.getAddress() - 1, parser.getCurrentCommand(),
+									address, symbol, address);
+						}
+						break;
+					case C_Command:
+						int word = code.encode(parser.dest(), parser.comp(), parser.jump());
+						if (word < 0) {
+							throw new IllegalArgumentException("invalid command: "
+									+ parser.getCurrentCommand());
+						}
+						if (this.echo) {
+							System.out.println(parser.getCurrentCommand() + "\t\t");
+							System.out.println(new String(toBinary(word)));
+						}
+						hackWriter.write(word);
+						if (listingWriter != null) {
+							listingWriter.add(parser.getAddress() - 1, parser.getCurrentCommand(),
+									word, null, 0);
+						}
+						break;
+					case L_Command:
+						if (this.echo) {
+							System.out.println(parser.getCurrentCommand());
+						}
+						if (listingWriter != null) {
+							String label = parser.getCurrentCommand().substring(1,
+									parser.getCurrentCommand().length() - 1);
+							listingWriter.add(parser.getAddress(), parser.getCurrentCommand(), -1,
+									label, parser.getAddress());
+						}
+						break;
+					default:
+						break;
+				}
+			} while (parser.hasMoreCommands());
+			this.hackWriter.close();
+		}
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //assemble the file in only one scan. The instructions are encoded into an
+	 * int buffer while reading, if an A-Command uses a symbol which is not in the symbol table
+	 * yet, we record its position in the patch list and fill it when the (LABEL) appears. The
+	 * symbols still in the patch list at the end of the file are variables, they get the
+	 * addresses in the order of their first use, so the output is the same as
+	 * firstScanFile() + secondScanFile().
+	 * @Date 13:04 2026/10/18
+	 * @Param []
+	 * @return void
+	 **/
+	public void singleScanFile() throws IOException {
+		singleScan(new Lexer(this.file), this.hackWriter);
+		this.hackWriter.close();
+	}
+
+	private void singleScan(Lexer lexer, HackWriter hackWriter) throws IOException {
+		int[] words = new int[1024];
+		int count = 0;
+		//the symbol -> positions in words which are waiting for the address of the symbol
+		LinkedHashMap<String, ArrayList<Integer>> patchList = new LinkedHashMap<>();
+		//the listing needs the resolved symbols, so we keep the lines and write them at the end.
+		// The address of a L-Command is stored as ~address.
+		boolean listing = this.listingFile != null;
+		ArrayList<Integer> listingAddresses = new ArrayList<>();
+		ArrayList<String> listingSources = new ArrayList<>();
+		ArrayList<String> listingSymbols = new ArrayList<>();
+		while (lexer.advance()) {
+			if (listing && lexer.getCommandType() != CommandType.UNKNOWN) {
+				boolean isLabel = lexer.getCommandType() == CommandType.L_Command;
+				listingAddresses.add(isLabel ? ~count : count);
+				listingSources.add(lexer.getCurrentLine());
+				listingSymbols.add(lexer.getCommandType() == CommandType.C_Command
+						|| lexer.isDigitSymbol() ? null : lexer.symbol());
+			}
+			switch (lexer.getCommandType()) {
 				case A_Command:
-					String symbol = parser.getCurrentCommand().substring(1);
-					if (parser.isDigit(symbol)) {
-						System.out.println(parser.getCurrentCommand() + "\t\t" + parser.symbol());
-						bufferedWriter.write(parser.symbol() + "\n");
+					if (count == words.length) {
+						words = Arrays.copyOf(words, count * 2);
+					}
+					if (lexer.isDigitSymbol()) {
+						words[count] = lexer.symbolValue();
 					} else {
-						int address = 0;
-						if (this.symbolTable.contains(symbol)) {
-							address = this.symbolTable.getAddress(symbol);
+						int address = this.symbolTable.getAddress(lexer.getBuffer(),
+								lexer.symbolStart(), lexer.symbolEnd());
+						if (address >= 0) {
+							words[count] = address;
 						} else {
-							this.symbolTable.addEntry(symbol, this.freeVarAddress);
-							address = this.freeVarAddress;
-							freeVarAddress++;
+							String symbol = lexer.symbol();
+							ArrayList<Integer> positions = patchList.get(symbol);
+							if (positions == null) {
+								positions = new ArrayList<>();
+								patchList.put(symbol, positions);
+							}
+							positions.add(count);
 						}
-						String addressStr = parser.paddingZero(Integer.toBinaryString(address));
-						System.out.println(parser.getCurrentCommand() + "\t\t" + addressStr);
-						bufferedWriter.write(addressStr + "\n");
 					}
+					count++;
 					break;
 				case C_Command:
-					System.out.println(parser.getCurrentCommand() + "\t\t");
-					String dest = code.dest(parser.dest());
-					String comp = code.comp(parser.comp());
-					String jump = code.jump(parser.jump());
-					String binCmd = "111" + comp + dest + jump;
-					System.out.println(binCmd);
-					bufferedWriter.write(binCmd + "\n");
+					if (count == words.length) {
+						words = Arrays.copyOf(words, count * 2);
+					}
+					int word = code.encode(lexer.getBuffer(), lexer.destStart(), lexer.destEnd(),
+							lexer.compStart(), lexer.compEnd(), lexer.jumpStart(), lexer.jumpEnd());
+					if (word < 0) {
+						throw new IllegalArgumentException("invalid command at line "
+								+ lexer.getLineNumber() + ": " + lexer.getCurrentCommand());
+					}
+					words[count] = word;
+					count++;
 					break;
 				case L_Command:
-					System.out.println(parser.getCurrentCommand());
+					if (!lexer.isDigitSymbol()) {
+						String label = lexer.symbol();
+						this.symbolTable.addEntry(label, count);
+						ArrayList<Integer> positions = patchList.remove(label);
+						if (positions != null) {
+							for (int position : positions) {
+								words[position] = count;
+							}
+						}
+					}
 					break;
 				default:
 					break;
 			}
-		} while (parser.hasMoreCommands());
-		this.bufferedWriter.flush();
+		}
+		//the rest symbols are variables
+		for (Map.Entry<String, ArrayList<Integer>> entry : patchList.entrySet()) {
+			int address = this.symbolTable.getOrAllocate(entry.getKey());
+			for (int position : entry.getValue()) {
+				words[position] = address;
+			}
+		}
+		hackWriter.write(words, 0, count);
+		if (listing) {
+			try (ListingWriter listingWriter = openListing()) {
+				for (int i = 0; i < listingAddresses.size(); i++) {
+					int address = listingAddresses.get(i);
+					if (address < 0) {
+						listingWriter.add(~address, listingSources.get(i), -1,
+								listingSymbols.get(i), ~address);
+					} else {
+						listingWriter.add(address, listingSources.get(i), words[address],
+								listingSymbols.get(i), words[address]);
+					}
+				}
+			}
+		}
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //assemble the program read from the reader and write the result into the
+	 * output stream, so the output of the vm translator can be assembled without a temporary
+	 * file. The output stream is flushed but not closed. A character above 0x7F is an error,
+	 * except in a comment where it is read as '?'.
+	 * @Date 13:14 2026/10/18
+	 * @Param [in, out]
+	 * @return void
+	 **/
+	public void assemble(Reader in, OutputStream out) throws IOException {
+		byte[] bytes = new byte[1 << 16];
+		int length = 0;
+		char[] chars = new char[8192];
+		int n;
+		//the comment runs from "//" to the end of the line
+		boolean comment = false;
+		int lineNumber = 1;
+		while ((n = in.read(chars)) != -1) {
+			if (length + n > bytes.length) {
+				bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + n));
+			}
+			for (int i = 0; i < n; i++) {
+				char c = chars[i];
+				if (c == '\n') {
+					comment = false;
+					lineNumber++;
+				} else if (c == '/' && length + i > 0 && bytes[length + i - 1] == '/') {
+					comment = true;
+				} else if (c > 0x7F) {
+					if (!comment) {
+						throw new IllegalArgumentException("non-ASCII character U+"
+								+ String.format("%04X", (int) c) + " at line " + lineNumber);
+					}
+					c = '?';
+				}
+				bytes[length + i] = (byte) c;
+			}
+			length += n;
+		}
+		assemble(ByteBuffer.wrap(bytes, 0, length), Channels.newChannel(out));
+		out.flush();
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the same as assemble(Reader, OutputStream), the program is read from the
+	 * channel until the end. The output channel is not closed.
+	 * @Date 13:14 2026/10/18
+	 * @Param [in, out]
+	 * @return void
+	 **/
+	public void assemble(ReadableByteChannel in, WritableByteChannel out) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+		while (in.read(buffer) != -1) {
+			if (!buffer.hasRemaining()) {
+				ByteBuffer bigger = ByteBuffer.allocate(buffer.capacity() * 2);
+				buffer.flip();
+				bigger.put(buffer);
+				buffer = bigger;
+			}
+		}
+		buffer.flip();
+		assemble(buffer, out);
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //assemble the program in [0, limit) of the buffer. Every call starts with a
+	 * new symbol table, so the labels and variables of the last program don't leak into the next
+	 * one. Only the assembler without files can do it, the assembler of a file has its compiled
+	 * file open already.
+	 * @Date 13:17 2026/10/18
+	 * @Param [program, out]
+	 * @return void
+	 **/
+	public void assemble(ByteBuffer program, WritableByteChannel out) throws IOException {
+		if (this.file != null) {
+			throw new IllegalStateException("the assembler of " + this.file
+					+ " can't assemble a stream, use new Assembler(format)");
+		}
+		this.symbolTable = new SymbolTable();
+		HackWriter hackWriter = new HackWriter(out, this.format);
+		singleScan(new Lexer(program), hackWriter);
+		hackWriter.flush();
+		this.hackWriter = hackWriter;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //assemble a big file with the fork/join pool. The file is split into chunks
+	 * at line boundaries, the chunks are lexed and encoded at the same time, then the labels are
+	 * added into the symbol table with the base address of their chunk, and the variables are
+	 * given addresses chunk by chunk so the order is the same as the sequential assembler. At
+	 * last the chunks fill the symbols and copy their words into the output at the same time.
+	 * @Date 13:08 2026/10/18
+	 * @Param []
+	 * @return void
+	 **/
+	public void parallelScanFile() throws IOException {
+		ByteBuffer buffer = Lexer.map(this.file);
+		ForkJoinPool pool = ForkJoinPool.commonPool();
+		//small files are not worth splitting
+		int chunkCount = buffer.limit() < PARALLEL_THRESHOLD ? 1 : pool.getParallelism() * 4;
+		Chunk[] chunks = Chunk.split(buffer, chunkCount);
+		pool.invoke(new ChunkTask(chunks, 0, chunks.length, null));
+		int[] words = link(chunks);
+		this.hackWriter.write(words, 0, words.length);
+		this.hackWriter.close();
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //add the labels and variables of the scanned chunks into the symbol table,
+	 * then fill the symbols of every chunk and put the words together
+	 * @Date 13:10 2026/10/18
+	 * @Param [chunks]
+	 * @return int[]
+	 **/
+	private int[] link(Chunk[] chunks) {
+		int count = 0;
+		for (Chunk chunk : chunks) {
+			chunk.setBase(count);
+			chunk.addLabels(this.symbolTable);
+			count += chunk.getCount();
+		}
+		for (Chunk chunk : chunks) {
+			chunk.addVariables(this.symbolTable);
+		}
+		int[] words = new int[count];
+		ForkJoinPool.commonPool().invoke(new ChunkTask(chunks, 0, chunks.length, words));
+		return words;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //reassemble the file with the cache of the last run. The cached chunks which
+	 * still match the start and the end of the file are kept, only the text between them is
+	 * split by its content, lexed and encoded, so a small edit only scans the chunk around it.
+	 * Then the output of the last run is patched if it can be, else all the chunks are linked
+	 * and written again.
+	 * @Date 13:10 2026/10/18
+	 * @Param [cacheFile]
+	 * @return void
+	 **/
+	public void incrementalScanFile(File cacheFile) throws IOException {
+		//the file is read only once, reading it costs less than mapping it in a new JVM
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(this.file.toPath()));
+		AssemblyCache cache = new AssemblyCache(cacheFile);
+		cache.load();
+		int n = cache.size();
+		//the cached chunks [0, head) are at the start of the file and [tail, n) are at the end,
+		// the text [from, to) between them is changed
+		int head = 0;
+		int from = 0;
+		while (head < n && cache.matches(head, buffer, from)) {
+			from += cache.getLength(head);
+			head++;
+		}
+		int tail = n;
+		int to = buffer.limit();
+		while (tail > head && to - cache.getLength(tail - 1) >= from
+				&& cache.matches(tail - 1, buffer, to - cache.getLength(tail - 1))) {
+			tail--;
+			to -= cache.getLength(tail);
+		}
+		Chunk[] changed = Chunk.splitByContent(buffer, from, to);
+		if (changed.length > 1) {
+			ForkJoinPool.commonPool().invoke(new ChunkTask(changed, 0, changed.length, null));
+		} else if (changed.length == 1) {
+			//one chunk is not worth starting the pool
+			changed[0].scan(this.code);
+		}
+		Chunk[] chunks = new Chunk[head + changed.length + n - tail];
+		System.arraycopy(changed, 0, chunks, head, changed.length);
+		//the index of the same chunk in the cache, -1 for the changed chunks
+		int[] cached = new int[chunks.length];
+		for (int i = 0; i < chunks.length; i++) {
+			cached[i] = i < head ? i : i < head + changed.length ? -1 : i - chunks.length + n;
+		}
+		if (changed.length == tail - head && cache.isOutput(this.binFile)
+				&& patchScan(cache, chunks, cached, head, tail)) {
+			return;
+		}
+		for (int i = 0; i < chunks.length; i++) {
+			if (cached[i] >= 0) {
+				chunks[i] = cache.getChunk(cached[i], true);
+			}
+		}
+		int[] words = link(chunks);
+		this.hackWriter.write(words, 0, words.length);
+		this.hackWriter.close();
+		cache.save(chunks, cached, this.binFile);
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //write the changes over the output of the last run instead of linking all
+	 * the chunks again. The changed chunks [head, tail) must define the same labels and use the
+	 * same symbols as the cached chunks they replace, then the variables keep their addresses and
+	 * only the labels move: a label of the changed chunks is found by its name, a label after
+	 * them moves by the change of the number of words. A chunk is only written again if its
+	 * words or its place changed, the other words are skipped in the output, and nothing is
+	 * written when nothing changed. It returns false and writes nothing if a moved label can't be
+	 * told from another label at the same address.
+	 * @Date 15:05 2026/10/18
+	 * @Param [cache, chunks, cached, head, tail]
+	 * @return boolean
+	 **/
+	private boolean patchScan(AssemblyCache cache, Chunk[] chunks, int[] cached, int head,
+			int tail) throws IOException {
+		//the old address of a label of the changed chunks -> its new address
+		HashMap<Integer, Integer> moved = new HashMap<>();
+		int start = 0;
+		for (int i = 0; i < head; i++) {
+			start += cache.getCount(i);
+		}
+		int oldBase = start;
+		int newBase = start;
+		for (int i = head; i < tail; i++) {
+			Chunk old = cache.getChunk(i, true);
+			if (!chunks[i].hasSameSymbols(old)) {
+				return false;
+			}
+			for (int j = 0; j < old.getLabels().size(); j++) {
+				int address = newBase + chunks[i].getLabelAddresses().get(j);
+				Integer other = moved.put(oldBase + old.getLabelAddresses().get(j), address);
+				if (other != null && other != address) {
+					return false;
+				}
+			}
+			chunks[i].setAddresses(old.getAddresses());
+			oldBase += old.getCount();
+			newBase += chunks[i].getCount();
+		}
+		int end = oldBase;
+		int delta = newBase - oldBase;
+		//the chunks before and after the changed ones may have labels at start and end too
+		Integer first = moved.get(start);
+		Integer last = moved.get(end);
+		if ((delta != 0 && start == end) || (first != null && first != start)
+				|| (last != null && last != end + delta)) {
+			return false;
+		}
+		boolean shifted = delta != 0;
+		for (Map.Entry<Integer, Integer> entry : moved.entrySet()) {
+			shifted |= !entry.getKey().equals(entry.getValue());
+		}
+		//the chunks whose addresses are saved again, null if the cache has the right ones
+		Chunk[] saved = new Chunk[chunks.length];
+		boolean written = false;
+		int[] words = new int[0];
+		int skipped = 0;
+		int oldPosition = 0;
+		int position = 0;
+		for (int i = 0; i < chunks.length; i++) {
+			Chunk chunk = chunks[i];
+			//if no label moved, the cached chunks are not read at all
+			int[] addresses = chunk != null ? chunk.getAddresses()
+					: shifted ? cache.getAddresses(i) : null;
+			int[] relocated = shifted ? relocate(addresses, start, end, delta, moved) : addresses;
+			if (chunk == null && relocated == addresses && position == oldPosition) {
+				skipped += cache.getCount(i);
+			} else {
+				if (chunk == null) {
+					chunk = cache.getChunk(i, false);
+				}
+				chunk.setAddresses(relocated);
+				saved[i] = chunk;
+				written = true;
+				this.hackWriter.skip(skipped);
+				skipped = 0;
+				if (words.length < chunk.getCount()) {
+					words = new int[chunk.getCount()];
+				}
+				chunk.patch(words, 0);
+				this.hackWriter.write(words, 0, chunk.getCount());
+			}
+			oldPosition += cache.getCount(i);
+			position += chunks[i] != null ? chunks[i].getCount() : cache.getCount(i);
+		}
+		this.hackWriter.skip(skipped);
+		this.hackWriter.close();
+		this.patchedChunks = chunks;
+		this.patchedCache = cache;
+		if (written) {
+			cache.save(saved, cached, this.binFile);
+		}
+		return true;
+	}
+
+	//move the labels of the addresses like patchScan() says, the same array if none moved
+	private static int[] relocate(int[] addresses, int start, int end, int delta,
+			HashMap<Integer, Integer> moved) {
+		int[] relocated = addresses;
+		for (int i = 0; i < addresses.length; i++) {
+			int label = ~addresses[i];
+			if (label < start) {
+				//a variable, a predefined symbol or a label before the changes
+				continue;
+			}
+			Integer to = label <= end ? moved.get(label) : null;
+			int address = to != null ? to : label == start ? label : label + delta;
+			if (address != label) {
+				if (relocated == addresses) {
+					relocated = addresses.clone();
+				}
+				relocated[i] = ~address;
+			}
+		}
+		return relocated;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //decode the whole file, remove the redundant commands with the peephole
+	 * optimizer and then encode the rest. The number of removed commands of every pattern is
+	 * kept in the optimizer report.
+	 * @Date 13:13 2026/10/18
+	 * @Param []
+	 * @return void
+	 **/
+	public void optimizedScanFile() throws IOException {
+		InstructionList list = InstructionList.decode(new Lexer(this.file), this.code);
+		PeepholeOptimizer optimizer = new PeepholeOptimizer();
+		int removed = optimizer.optimize(list);
+		int[] words = list.encode(this.symbolTable);
+		this.hackWriter.write(words, 0, words.length);
+		this.hackWriter.close();
+		this.removedCount = removed;
+		this.optimizerReport = optimizer.getReport() + removed + " commands removed, "
+				+ words.length + " left\n";
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //assemble the file into a relocatable object file instead of a rom image, the
+	 * object files are put together by the Linker. The assembler must be created with
+	 * OutputFormat.OBJECT.
+	 * @Date 13:11 2026/10/18
+	 * @Param []
+	 * @return void
+	 **/
+	public void objectScanFile() throws IOException {
+		ByteBuffer buffer = Lexer.map(this.file);
+		Chunk chunk = new Chunk(buffer, 0, buffer.limit());
+		chunk.scan(this.code);
+		HackObject.fromChunk(chunk).write(this.binFile);
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //scan the chunks [from, to), or patch them into the output if output is not
+	 * null
+	 * @Date 13:08 2026/10/18
+	 **/
+	private static class ChunkTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final transient Chunk[] chunks;
+		private final int from;
+		private final int to;
+		private final int[] output;
+
+		ChunkTask(Chunk[] chunks, int from, int to, int[] output) {
+			this.chunks = chunks;
+			this.from = from;
+			this.to = to;
+			this.output = output;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to - this.from <= 1) {
+				if (this.from == this.to) {
+					return;
+				}
+				if (this.output == null) {
+					this.chunks[this.from].scan(new Code());
+				} else {
+					Chunk chunk = this.chunks[this.from];
+					chunk.patch(this.output, chunk.getBase());
+				}
+				return;
+			}
+			int middle = (this.from + this.to) >>> 1;
+			invokeAll(new ChunkTask(this.chunks, this.from, middle, this.output),
+					new ChunkTask(this.chunks, middle, this.to, this.output));
+		}
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the 16 bit binary form of the word
+	 * @Date 13:05 2026/10/18
+	 * @Param [word]
+	 * @return char[]
+	 **/
+	private static char[] toBinary(int word) {
+		char[] chars = new char[16];
+		for (int i = 15; i >= 0; i--) {
+			chars[i] = (char) ('0' + (word & 1));
+			word >>>= 1;
+		}
+		return chars;
 	}
 
 	public static void main(String[] args) throws IOException {
 		File file = new File("D:\\GoogleBrowserDownload\\nand2tetris\\projects\\06\\pong\\Pong" +
 				".asm");
-		Assembler assembler = new Assembler(file);
-		assembler.firstScanFile();
-		assembler.secondScanFile();
+		boolean singlePass = false;
+		boolean parallel = false;
+		boolean optimize = false;
+		File cacheFile = null;
+		boolean echo = false;
+		File listingFile = null;
+		File labelFile = null;
+		OutputFormat format = OutputFormat.TEXT;
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (arg.equals("-single")) {
+				singlePass = true;
+			} else if (arg.equals("-optimize")) {
+				optimize = true;
+			} else if (arg.equals("-parallel")) {
+				parallel = true;
+			} else if (arg.equals("-incremental") && i + 1 < args.length) {
+				cacheFile = new File(args[++i]);
+			} else if (arg.equals("-echo")) {
+				echo = true;
+			} else if (arg.equals("-list") && i + 1 < args.length) {
+				listingFile = new File(args[++i]);
+			} else if (arg.equals("-labels") && i + 1 < args.length) {
+				labelFile = new File(args[++i]);
+			} else if (arg.equals("-binary")) {
+				format = OutputFormat.BINARY;
+			} else if (arg.equals("-object")) {
+				format = OutputFormat.OBJECT;
+			} else {
+				file = new File(arg);
+			}
+		}
+		try (Assembler assembler = new Assembler(file, format)) {
+			assembler.setEcho(echo);
+			assembler.setListingFile(listingFile);
+			if (format == OutputFormat.OBJECT) {
+				assembler.objectScanFile();
+			} else if (optimize) {
+				assembler.optimizedScanFile();
+				System.out.print(assembler.getOptimizerReport());
+			} else if (cacheFile != null) {
+				assembler.incrementalScanFile(cacheFile);
+			} else if (parallel) {
+				assembler.parallelScanFile();
+			} else if (singlePass) {
+				assembler.singleScanFile();
+			} else {
+				assembler.firstScanFile();
+				assembler.secondScanFile();
+			}
+			if (labelFile != null) {
+				assembler.writeLabels(labelFile);
+			}
+		}
 	}
 }
@@ -0,0 +1,110 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:17
+ */
+public class AssemblerClient {
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //send one request line (and the body if there is one) to the daemon, return
+	 * the reply line, the bytes after it are copied into body
+	 * @Date 13:17 2026/10/18
+	 * @Param [socket, request, payload, body]
+	 * @return java.lang.String
+	 **/
+	public static String request(String socket, String request, byte[] payload,
+	                             OutputStream body) throws IOException {
+		try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+			channel.connect(UnixDomainSocketAddress.of(socket));
+			OutputStream out = Channels.newOutputStream(channel);
+			out.write((request + "\n").getBytes(StandardCharsets.UTF_8));
+			if (payload != null) {
+				out.write(payload);
+			}
+			out.flush();
+			InputStream in = Channels.newInputStream(channel);
+			ByteArrayOutputStream line = new ByteArrayOutputStream();
+			int b;
+			while ((b = in.read()) != -1 && b != '\n') {
+				line.write(b);
+			}
+			byte[] buffer = new byte[1 << 16];
+			int n;
+			while ((n = in.read(buffer)) > 0) {
+				body.write(buffer, 0, n);
+			}
+			return line.toString("UTF-8");
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.out.println("Usage:java AssemblerClient [-socket path] [-out file] [-binary] "
+					+ "[-mode single|parallel|optimize] input.asm|-|ping|shutdown");
+			return;
+		}
+		String socket = AssemblerDaemon.DEFAULT_SOCKET;
+		String out = null;
+		String format = "text";
+		String mode = "single";
+		String input = null;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-socket") && i + 1 < args.length) {
+				socket = args[++i];
+			} else if (args[i].equals("-out") && i + 1 < args.length) {
+				out = new File(args[++i]).getAbsolutePath();
+			} else if (args[i].equals("-binary")) {
+				format = "binary";
+			} else if (args[i].equals("-mode") && i + 1 < args.length) {
+				mode = args[++i];
+			} else {
+				input = args[i];
+			}
+		}
+		if (input == null) {
+			throw new IllegalArgumentException("No input");
+		}
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		String reply;
+		if (input.equals("ping") || input.equals("shutdown")) {
+			reply = request(socket, input, null, body);
+		} else if (input.equals("-")) {
+			//the program comes from stdin, the compiled program goes to stdout without -out
+			byte[] program = System.in.readAllBytes();
+			String request = "source\tlength=" + program.length + "\tformat=" + format;
+			if (out != null) {
+				request += "\tout=" + out;
+			}
+			reply = request(socket, request, program, body);
+		} else {
+			//the daemon opens the file itself, so the path must be absolute
+			String request = "assemble\tin=" + new File(input).getAbsolutePath() + "\tformat="
+					+ format + "\tmode=" + mode;
+			if (out != null) {
+				request += "\tout=" + out;
+			}
+			reply = request(socket, request, null, body);
+		}
+		System.err.println(reply);
+		if (body.size() > 0) {
+			body.writeTo(System.out);
+			System.out.flush();
+		}
+		if (!reply.startsWith("OK")) {
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,265 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:17
+ *
+ * The assembler stays in one warm JVM and takes requests from a Unix domain socket, one request
+ * per connection. A request is one line of tab separated fields, the first field is the command:
+ *   assemble  in=PATH [out=PATH] [format=text|binary] [mode=single|parallel|optimize]
+ *   source    length=N [out=PATH] [format=text|binary]   followed by N bytes of the program
+ *   ping
+ *   shutdown
+ * The reply is one line "OK instructions=N ms=T" or "ERROR message", mode=optimize adds
+ * " removed=R" after the instructions. When the source has no out path, the reply line ends with
+ * " length=L" and the L bytes of the compiled program follow. A source is at most 16 MiB.
+ */
+public class AssemblerDaemon {
+	public static final String DEFAULT_SOCKET = System.getProperty("java.io.tmpdir")
+			+ File.separator + "hack-assembler.sock";
+	//the header line is never longer than this
+	private static final int MAX_HEADER = 1 << 16;
+	//the longest source of a request, far more than a program which fits in the 32K words of the
+	// ROM needs, so one request can't take the memory of the others
+	private static final int MAX_SOURCE = 1 << 24;
+
+	private Path socketPath;
+	private ServerSocketChannel server;
+	private volatile boolean running;
+
+	public AssemblerDaemon(Path socketPath) {
+		this.socketPath = socketPath;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //assemble a small program many times, so the parser and the encoder are
+	 * compiled by the JIT before the first request comes
+	 * @Date 13:17 2026/10/18
+	 * @Param []
+	 * @return void
+	 **/
+	private static void warmUp() throws IOException {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			builder.append("(L").append(i).append(")\n@v").append(i % 50).append("\nD=M\n@L")
+					.append(i).append("\nD;JGT\nAM=M+1 // comment\n");
+		}
+		byte[] program = builder.toString().getBytes(StandardCharsets.US_ASCII);
+		for (int i = 0; i < 50; i++) {
+			new Assembler(OutputFormat.TEXT).assemble(ByteBuffer.wrap(program),
+					Channels.newChannel(new ByteArrayOutputStream()));
+		}
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //accept the connections until shutdown, every connection is handled on its
+	 * own virtual thread. Every request creates its own Assembler, so the symbol tables and the
+	 * variable addresses of different programs never mix.
+	 * @Date 13:17 2026/10/18
+	 * @Param []
+	 * @return void
+	 **/
+	public void serve() throws IOException {
+		if (Files.exists(this.socketPath)) {
+			if (isListening(this.socketPath)) {
+				throw new IOException("another daemon is listening on " + this.socketPath);
+			}
+			//left by a daemon which didn't shut down
+			Files.delete(this.socketPath);
+		}
+		this.server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+		this.server.bind(UnixDomainSocketAddress.of(this.socketPath));
+		this.running = true;
+		warmUp();
+		System.out.println("assembler daemon listening on " + this.socketPath);
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			while (this.running) {
+				SocketChannel channel;
+				try {
+					channel = this.server.accept();
+				} catch (IOException e) {
+					//the server is closed by shutdown
+					break;
+				}
+				executor.submit(() -> handle(channel));
+			}
+		} finally {
+			Files.deleteIfExists(this.socketPath);
+		}
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //does a daemon accept connections on the socket file? a socket file which
+	 * nobody accepts on is left by a daemon that didn't shut down
+	 * @Date 14:33 2026/10/18
+	 * @Param [socketPath]
+	 * @return boolean
+	 **/
+	private static boolean isListening(Path socketPath) {
+		try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+			channel.connect(UnixDomainSocketAddress.of(socketPath));
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private void handle(SocketChannel channel) {
+		try (SocketChannel ch = channel) {
+			InputStream in = Channels.newInputStream(ch);
+			OutputStream out = Channels.newOutputStream(ch);
+			String reply;
+			byte[] body = null;
+			try {
+				String[] fields = readHeader(in).split("\t");
+				HashMap<String, String> options = new HashMap<>();
+				for (int i = 1; i < fields.length; i++) {
+					int equal = fields[i].indexOf('=');
+					if (equal > 0) {
+						options.put(fields[i].substring(0, equal), fields[i].substring(equal + 1));
+					}
+				}
+				long start = System.nanoTime();
+				switch (fields[0]) {
+					case "ping":
+						reply = "OK";
+						break;
+					case "shutdown":
+						reply = "OK";
+						this.running = false;
+						this.server.close();
+						break;
+					case "assemble":
+						reply = "OK " + assembleFile(options) + timing(start);
+						break;
+					case "source":
+						ByteArrayOutputStream output = new ByteArrayOutputStream();
+						int instructions = assembleSource(in, options, output);
+						reply = "OK instructions=" + instructions + timing(start);
+						if (!options.containsKey("out")) {
+							body = output.toByteArray();
+							reply += " length=" + body.length;
+						}
+						break;
+					default:
+						reply = "ERROR unknown command " + fields[0];
+						break;
+				}
+			} catch (Exception e) {
+				reply = "ERROR " + String.valueOf(e).replace('\n', ' ');
+			}
+			out.write((reply + "\n").getBytes(StandardCharsets.UTF_8));
+			if (body != null) {
+				out.write(body);
+			}
+			out.flush();
+		} catch (IOException e) {
+			//the client is gone, nothing to reply
+		}
+	}
+
+	private static String timing(long start) {
+		return String.format(" ms=%.3f", (System.nanoTime() - start) / 1e6);
+	}
+
+	private static String readHeader(InputStream in) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		int b;
+		while ((b = in.read()) != -1 && b != '\n') {
+			if (line.size() == MAX_HEADER) {
+				throw new IOException("request line is too long");
+			}
+			line.write(b);
+		}
+		return line.toString("UTF-8");
+	}
+
+	private static OutputFormat format(HashMap<String, String> options) {
+		return "binary".equals(options.get("format")) ? OutputFormat.BINARY : OutputFormat.TEXT;
+	}
+
+	//the reply fields of the assembled file
+	private static String assembleFile(HashMap<String, String> options) throws IOException {
+		String in = options.get("in");
+		if (in == null) {
+			throw new IllegalArgumentException("in is required");
+		}
+		File file = new File(in);
+		OutputFormat format = format(options);
+		try (Assembler assembler = options.containsKey("out") ?
+				new Assembler(file, new File(options.get("out")), format) :
+				new Assembler(file, format)) {
+			String mode = options.getOrDefault("mode", "single");
+			switch (mode) {
+				case "single":
+					assembler.singleScanFile();
+					break;
+				case "parallel":
+					assembler.parallelScanFile();
+					break;
+				case "optimize":
+					assembler.optimizedScanFile();
+					return "instructions=" + assembler.getInstructionCount() + " removed="
+							+ assembler.getRemovedCount();
+				default:
+					throw new IllegalArgumentException("unknown mode " + mode);
+			}
+			return "instructions=" + assembler.getInstructionCount();
+		}
+	}
+
+	private static int assembleSource(InputStream in, HashMap<String, String> options,
+	                                  ByteArrayOutputStream output) throws IOException {
+		int length = Integer.parseInt(options.getOrDefault("length", "-1"));
+		if (length < 0) {
+			throw new IllegalArgumentException("length is required");
+		}
+		if (length > MAX_SOURCE) {
+			throw new IllegalArgumentException("length " + length + " is more than "
+					+ MAX_SOURCE);
+		}
+		byte[] program = new byte[length];
+		int n = 0;
+		while (n < length) {
+			int read = in.read(program, n, length - n);
+			if (read < 0) {
+				throw new IOException("the source is shorter than length");
+			}
+			n += read;
+		}
+		Assembler assembler = new Assembler(format(options));
+		if (options.containsKey("out")) {
+			try (OutputStream out = Files.newOutputStream(Paths.get(options.get("out")))) {
+				assembler.assemble(ByteBuffer.wrap(program), Channels.newChannel(out));
+			}
+		} else {
+			assembler.assemble(ByteBuffer.wrap(program), Channels.newChannel(output));
+		}
+		return assembler.getInstructionCount();
+	}
+
+	public static void main(String[] args) throws IOException {
+		String socket = args.length > 0 ? args[0] : DEFAULT_SOCKET;
+		new AssemblerDaemon(Paths.get(socket)).serve();
+	}
+}
@@ -0,0 +1,226 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:10
+ */
+public class AssemblyCache {
+	//the first int of the cache file, change it when the format of Chunk.writeTo() changes
+	private static final int MAGIC = 0x48414302;
+	//the magic, the length and the last modified time of the output file, the number of chunks
+	private static final int HEADER_SIZE = 4 + 8 + 8 + 4;
+	//the hash, the text length and the number of words of every chunk, the position and length
+	// of its record written by Chunk.writeTo() and the position of its addresses. The addresses
+	// are kept out of the record, so the record of a cached chunk is still right after a link.
+	private static final int INDEX_SIZE = 8 + 4 + 4 + 4 + 4 + 4;
+
+	private File file;
+	//the cache file, a chunk is only read when it is asked for
+	private ByteBuffer bytes;
+	//the index of the cached chunks, in the program order
+	private long[] hashes = new long[0];
+	private int[] lengths = new int[0];
+	private int[] counts = new int[0];
+	private int[] offsets = new int[0];
+	private int[] recordLengths = new int[0];
+	private int[] addressOffsets = new int[0];
+	//the output file when the cache was saved, the output can be patched only if it is the same
+	private long outputLength = -1;
+	private long outputModified = -1;
+
+	public AssemblyCache(File file) {
+		this.file = file;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //read the cache file and its index, if the file doesn't exist or is broken,
+	 * the cache is empty and everything is scanned again
+	 * @Date 13:10 2026/10/18
+	 * @Param []
+	 * @return void
+	 **/
+	public void load() {
+		this.hashes = new long[0];
+		if (!this.file.isFile()) {
+			return;
+		}
+		try {
+			ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(this.file.toPath()))
+					.order(ByteOrder.LITTLE_ENDIAN);
+			if (bytes.limit() < HEADER_SIZE || bytes.getInt() != MAGIC) {
+				return;
+			}
+			long outputLength = bytes.getLong();
+			long outputModified = bytes.getLong();
+			int n = bytes.getInt();
+			if (n < 0 || n > (bytes.limit() - HEADER_SIZE) / INDEX_SIZE) {
+				return;
+			}
+			long[] hashes = new long[n];
+			int[] lengths = new int[n];
+			int[] counts = new int[n];
+			int[] offsets = new int[n];
+			int[] recordLengths = new int[n];
+			int[] addressOffsets = new int[n];
+			for (int i = 0; i < n; i++) {
+				hashes[i] = bytes.getLong();
+				lengths[i] = bytes.getInt();
+				counts[i] = bytes.getInt();
+				offsets[i] = bytes.getInt();
+				recordLengths[i] = bytes.getInt();
+				addressOffsets[i] = bytes.getInt();
+				if (lengths[i] < 0 || offsets[i] < HEADER_SIZE || recordLengths[i] < 0
+						|| offsets[i] > bytes.limit() - recordLengths[i]
+						|| addressOffsets[i] < HEADER_SIZE
+						|| addressOffsets[i] > bytes.limit() - 4) {
+					return;
+				}
+			}
+			this.bytes = bytes;
+			this.hashes = hashes;
+			this.lengths = lengths;
+			this.counts = counts;
+			this.offsets = offsets;
+			this.recordLengths = recordLengths;
+			this.addressOffsets = addressOffsets;
+			this.outputLength = outputLength;
+			this.outputModified = outputModified;
+		} catch (IOException e) {
+			this.hashes = new long[0];
+		}
+	}
+
+	//the number of cached chunks
+	public int size() {
+		return this.hashes.length;
+	}
+
+	public int getLength(int index) {
+		return this.lengths[index];
+	}
+
+	public int getCount(int index) {
+		return this.counts[index];
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //whether the text at position of the buffer is the text of the cached chunk
+	 * at index
+	 * @Date 15:05 2026/10/18
+	 * @Param [index, buffer, position]
+	 * @return boolean
+	 **/
+	public boolean matches(int index, ByteBuffer buffer, int position) {
+		int length = this.lengths[index];
+		return position >= 0 && position <= buffer.limit() - length
+				&& Chunk.hash(buffer, position, position + length) == this.hashes[index];
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //read the cached chunk at index with its addresses, the record is read again
+	 * at every call. A chunk without the names can only be patched.
+	 * @Date 15:05 2026/10/18
+	 * @Param [index, names]
+	 * @return Chunk
+	 **/
+	public Chunk getChunk(int index, boolean names) {
+		ByteBuffer in = this.bytes.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		in.position(this.offsets[index]).limit(this.offsets[index] + this.recordLengths[index]);
+		Chunk chunk = Chunk.readFrom(in, names);
+		chunk.setAddresses(getAddresses(index));
+		return chunk;
+	}
+
+	//the addresses of the symbols of the cached chunk at index, a label is ~address
+	public int[] getAddresses(int index) {
+		ByteBuffer in = this.bytes.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		in.position(this.addressOffsets[index]);
+		return Chunk.getInts(in, in.getInt());
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //whether the output file is the one written with this cache, a patch into
+	 * an output which was changed or removed since then would give a wrong program
+	 * @Date 15:05 2026/10/18
+	 * @Param [output]
+	 * @return boolean
+	 **/
+	public boolean isOutput(File output) {
+		return output.length() == this.outputLength
+				&& output.lastModified() == this.outputModified;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //write the chunks into a temporary file and then replace the cache file, so a
+	 * crash never leaves half a cache. If cached[i] is not -1, chunks[i] has the same text as
+	 * the cached chunk at that index and the record is copied, if chunks[i] is null too, the
+	 * addresses are also copied. The output must be closed, its length and time are saved to
+	 * check the next patch.
+	 * @Date 13:10 2026/10/18
+	 * @Param [chunks, cached, output]
+	 * @return void
+	 **/
+	public void save(Chunk[] chunks, int[] cached, File output) throws IOException {
+		int size = HEADER_SIZE + INDEX_SIZE * chunks.length;
+		for (int i = 0; i < chunks.length; i++) {
+			size += cached[i] >= 0 ? this.recordLengths[cached[i]] : chunks[i].getRecordSize();
+			size += 4 + 4 * (chunks[i] != null ? chunks[i].getAddresses().length
+					: this.bytes.getInt(this.addressOffsets[cached[i]]));
+		}
+		ByteBuffer out = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+		out.putInt(MAGIC);
+		out.putLong(output.length());
+		out.putLong(output.lastModified());
+		out.putInt(chunks.length);
+		out.position(HEADER_SIZE + INDEX_SIZE * chunks.length);
+		for (int i = 0; i < chunks.length; i++) {
+			int index = HEADER_SIZE + INDEX_SIZE * i;
+			int offset = out.position();
+			if (cached[i] >= 0) {
+				out.putLong(index, this.hashes[cached[i]]);
+				out.putInt(index + 8, this.lengths[cached[i]]);
+				out.putInt(index + 12, this.counts[cached[i]]);
+				out.put(this.bytes.array(), this.offsets[cached[i]], this.recordLengths[cached[i]]);
+			} else {
+				out.putLong(index, chunks[i].getHash());
+				out.putInt(index + 8, chunks[i].getLength());
+				out.putInt(index + 12, chunks[i].getCount());
+				chunks[i].writeTo(out);
+			}
+			out.putInt(index + 16, offset);
+			out.putInt(index + 20, out.position() - offset);
+		}
+		for (int i = 0; i < chunks.length; i++) {
+			out.putInt(HEADER_SIZE + INDEX_SIZE * i + 24, out.position());
+			if (chunks[i] != null) {
+				int[] addresses = chunks[i].getAddresses();
+				out.putInt(addresses.length);
+				Chunk.putInts(out, addresses, addresses.length);
+			} else {
+				int from = this.addressOffsets[cached[i]];
+				out.put(this.bytes.array(), from, 4 + 4 * this.bytes.getInt(from));
+			}
+		}
+		out.flip();
+		File temp = new File(this.file.getPath() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			while (out.hasRemaining()) {
+				channel.write(out);
+			}
+		}
+		Files.move(temp.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+}
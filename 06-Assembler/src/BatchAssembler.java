@@ -0,0 +1,165 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:15
+ */
+public class BatchAssembler {
+	private static final int DEFAULT_LIMIT = 64;
+
+	//the result of one file
+	private static class Result {
+		File file;
+		int instructions;
+		long nanos;
+		Exception error;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //collect the .asm files: a directory is searched recursively, a file is taken
+	 * as it is, anything else is a glob pattern like "tests/**.asm"
+	 * @Date 13:15 2026/10/18
+	 * @Param [arg]
+	 * @return java.util.List<java.io.File>
+	 **/
+	private static List<File> findAsmFiles(String arg) throws IOException {
+		File file = new File(arg);
+		if (file.isFile()) {
+			ArrayList<File> res = new ArrayList<>();
+			res.add(file);
+			return res;
+		}
+		Path root;
+		PathMatcher matcher;
+		if (file.isDirectory()) {
+			root = file.toPath();
+			matcher = FileSystems.getDefault().getPathMatcher("glob:**.asm");
+		} else {
+			//walk from the part of the pattern before the first glob char
+			int first = 0;
+			while (first < arg.length() && "*?[{".indexOf(arg.charAt(first)) < 0) {
+				first++;
+			}
+			int slash = Math.max(arg.lastIndexOf('/', first), arg.lastIndexOf('\\', first));
+			root = Paths.get(slash < 0 ? "." : arg.substring(0, slash + 1));
+			matcher = FileSystems.getDefault().getPathMatcher("glob:" + arg);
+		}
+		if (!Files.isDirectory(root)) {
+			return new ArrayList<>();
+		}
+		try (Stream<Path> paths = Files.walk(root)) {
+			return paths.filter(Files::isRegularFile)
+					.filter(p -> matcher.matches(p) || matcher.matches(root.relativize(p)))
+					.map(Path::toFile)
+					.sorted()
+					.collect(Collectors.toList());
+		}
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //assemble every file on its own virtual thread, at most limit files are
+	 * assembled at the same time. Every file has its own Assembler and symbol table, they share
+	 * one Code because Code has no state.
+	 * @Date 13:15 2026/10/18
+	 * @Param [files, limit]
+	 * @return java.util.List<Result>
+	 **/
+	private static List<Result> assembleAll(List<File> files, int limit) {
+		Semaphore inFlight = new Semaphore(limit);
+		Code code = new Code();
+		ArrayList<Future<Result>> futures = new ArrayList<>();
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (File file : files) {
+				futures.add(executor.submit(() -> {
+					inFlight.acquire();
+					try {
+						return assembleOne(file, code);
+					} finally {
+						inFlight.release();
+					}
+				}));
+			}
+		}
+		ArrayList<Result> results = new ArrayList<>();
+		for (Future<Result> future : futures) {
+			try {
+				results.add(future.get());
+			} catch (Exception e) {
+				//assembleOne() catches everything, so this doesn't happen
+				throw new IllegalStateException(e);
+			}
+		}
+		return results;
+	}
+
+	private static Result assembleOne(File file, Code code) {
+		Result result = new Result();
+		result.file = file;
+		long start = System.nanoTime();
+		//the compiled file is closed, and deleted when the file has an error
+		try (Assembler assembler = new Assembler(file)) {
+			assembler.setCode(code);
+			assembler.singleScanFile();
+			result.instructions = assembler.getInstructionCount();
+		} catch (Exception e) {
+			result.error = e;
+		}
+		result.nanos = System.nanoTime() - start;
+		return result;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.out.println("Usage:java BatchAssembler [-j limit] [directory|file|glob]...");
+			return;
+		}
+		int limit = DEFAULT_LIMIT;
+		ArrayList<File> files = new ArrayList<>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-j") && i + 1 < args.length) {
+				limit = Integer.parseInt(args[++i]);
+			} else {
+				files.addAll(findAsmFiles(args[i]));
+			}
+		}
+		if (files.size() == 0) {
+			throw new IllegalArgumentException("No asm file found");
+		}
+		long start = System.nanoTime();
+		List<Result> results = assembleAll(files, limit);
+		long total = System.nanoTime() - start;
+		int failed = 0;
+		long instructions = 0;
+		for (Result result : results) {
+			if (result.error != null) {
+				failed++;
+				System.out.printf("%-60s FAILED %s%n", result.file.getPath(), result.error);
+			} else {
+				instructions += result.instructions;
+				System.out.printf("%-60s %8d instructions %8.2f ms%n", result.file.getPath(),
+						result.instructions, result.nanos / 1e6);
+			}
+		}
+		System.out.printf("%d files, %d failed, %d instructions, %.2f ms%n", results.size(),
+				failed, instructions, total / 1e6);
+		if (failed > 0) {
+			System.exit(1);
+		}
+	}
+}
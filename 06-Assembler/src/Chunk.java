@@ -0,0 +1,413 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:08
+ */
+public class Chunk {
+	//splitByContent() ends a chunk after a line whose hash has these bits all zero, so the
+	// chunks are 64 lines long on average and an edit only changes the chunks around it
+	private static final int CUT_MASK = 0x3F;
+	private static final int MIN_LINES = 16;
+	private static final int MAX_LINES = 1024;
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	//the lines of this chunk are [from, to) of the buffer
+	private ByteBuffer buffer;
+	private int from;
+	private int to;
+	//the encoded words, the A-Command with symbol is 0 here and filled in the output by patch()
+	private int[] words;
+	private int count;
+	//the address of the first instruction of this chunk in the whole program
+	private int base;
+	//the labels and their addresses relative to this chunk
+	private ArrayList<String> labels = new ArrayList<>();
+	private ArrayList<Integer> labelAddresses = new ArrayList<>();
+	//the symbols used by A-Command, in the order of their first use in this chunk
+	private ArrayList<String> symbols = new ArrayList<>();
+	//which word uses which symbol (the index of symbols)
+	private int[] refPositions = new int[64];
+	private int[] refSymbols = new int[64];
+	private int refCount;
+	//the addresses of the symbols, ~address for a label, so the labels can be moved without
+	// their names. They are set by addVariables() or read from the cache.
+	private int[] addresses = new int[0];
+	//the hash() of the text of this chunk, only set by splitByContent() and readFrom()
+	private long hash;
+
+	public Chunk(ByteBuffer buffer, int from, int to) {
+		this.buffer = buffer;
+		this.from = from;
+		this.to = to;
+		this.words = new int[Math.max(16, (to - from) / 8)];
+	}
+
+	private Chunk() {
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //split the buffer into about n chunks, every chunk starts at the start of a
+	 * line
+	 * @Date 13:08 2026/10/18
+	 * @Param [buffer, n]
+	 * @return Chunk[]
+	 **/
+	public static Chunk[] split(ByteBuffer buffer, int n) {
+		int length = buffer.limit();
+		int size = Math.max(1, length / n);
+		ArrayList<Chunk> chunks = new ArrayList<>();
+		int start = 0;
+		while (start < length) {
+			int end = Math.min(length, start + size);
+			while (end < length && buffer.get(end - 1) != '\n') {
+				end++;
+			}
+			chunks.add(new Chunk(buffer, start, end));
+			start = end;
+		}
+		return chunks.toArray(new Chunk[0]);
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //split [from, to) of the buffer into chunks whose ends are decided by the
+	 * content of the lines instead of the position, so inserting or removing a line doesn't move
+	 * the chunks after it. from must be the start of a line. Every chunk gets the hash() of its
+	 * text, so the buffer must be on an array.
+	 * @Date 13:10 2026/10/18
+	 * @Param [buffer, from, to]
+	 * @return Chunk[]
+	 **/
+	public static Chunk[] splitByContent(ByteBuffer buffer, int from, int to) {
+		ArrayList<Chunk> chunks = new ArrayList<>();
+		int start = from;
+		int lines = 0;
+		long lineHash = FNV_OFFSET;
+		for (int i = from; i < to; i++) {
+			byte b = buffer.get(i);
+			lineHash = (lineHash ^ (b & 0xff)) * FNV_PRIME;
+			if (b != '\n' && i != to - 1) {
+				continue;
+			}
+			lines++;
+			if ((lines >= MIN_LINES && (lineHash & CUT_MASK) == 0) || lines == MAX_LINES
+					|| i == to - 1) {
+				Chunk chunk = new Chunk(buffer, start, i + 1);
+				chunk.hash = hash(buffer, start, i + 1);
+				chunks.add(chunk);
+				start = i + 1;
+				lines = 0;
+			}
+			lineHash = FNV_OFFSET;
+		}
+		return chunks.toArray(new Chunk[0]);
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the hash of [from, to) of the buffer, the CRC-32 in the high half and the
+	 * Adler-32 in the low half. Both are computed by zlib, so the cache checks a big file fast
+	 * even before the JIT compiler has started. The buffer must be on an array.
+	 * @Date 15:05 2026/10/18
+	 * @Param [buffer, from, to]
+	 * @return long
+	 **/
+	public static long hash(ByteBuffer buffer, int from, int to) {
+		byte[] text = buffer.array();
+		int offset = buffer.arrayOffset() + from;
+		CRC32 crc = new CRC32();
+		crc.update(text, offset, to - from);
+		Adler32 adler = new Adler32();
+		adler.update(text, offset, to - from);
+		return crc.getValue() << 32 | adler.getValue();
+	}
+
+	public int[] getWords() {
+		return words;
+	}
+
+	public ArrayList<String> getLabels() {
+		return labels;
+	}
+
+	public ArrayList<Integer> getLabelAddresses() {
+		return labelAddresses;
+	}
+
+	public ArrayList<String> getSymbols() {
+		return symbols;
+	}
+
+	public int getRefCount() {
+		return refCount;
+	}
+
+	public int[] getRefPositions() {
+		return refPositions;
+	}
+
+	public int[] getRefSymbols() {
+		return refSymbols;
+	}
+
+	public long getHash() {
+		return hash;
+	}
+
+	//the length of the text of this chunk
+	public int getLength() {
+		return this.to - this.from;
+	}
+
+	public int[] getAddresses() {
+		return addresses;
+	}
+
+	public void setAddresses(int[] addresses) {
+		this.addresses = addresses;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the most bytes writeTo() writes, a name takes at most 3 bytes per char
+	 * @Date 15:05 2026/10/18
+	 * @Param []
+	 * @return int
+	 **/
+	public int getRecordSize() {
+		int size = 8 + 4 + this.count * 4 + 4 + this.refCount * 8 + 4 + this.labels.size() * 4 + 4;
+		for (String label : this.labels) {
+			size += 2 + label.length() * 3;
+		}
+		for (String symbol : this.symbols) {
+			size += 2 + symbol.length() * 3;
+		}
+		return size;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //save the result of scan(). The words are saved as scan() encoded them,
+	 * patch() fills the symbols in the output, not in the words. The names are at the end, so a
+	 * chunk which is only patched again doesn't read them, and the arrays are copied at once.
+	 * @Date 13:10 2026/10/18
+	 * @Param [out]
+	 * @return void
+	 **/
+	public void writeTo(ByteBuffer out) {
+		out.putLong(this.hash);
+		out.putInt(this.count);
+		putInts(out, this.words, this.count);
+		out.putInt(this.refCount);
+		putInts(out, this.refPositions, this.refCount);
+		putInts(out, this.refSymbols, this.refCount);
+		out.putInt(this.labels.size());
+		for (int i = 0; i < this.labels.size(); i++) {
+			putName(out, this.labels.get(i));
+			out.putInt(this.labelAddresses.get(i));
+		}
+		out.putInt(this.symbols.size());
+		for (String symbol : this.symbols) {
+			putName(out, symbol);
+		}
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //read a chunk saved by writeTo(), it can be linked without scanning again.
+	 * Without the names, the chunk can only be patched with the addresses of the cache.
+	 * @Date 13:10 2026/10/18
+	 * @Param [in, names]
+	 * @return Chunk
+	 **/
+	public static Chunk readFrom(ByteBuffer in, boolean names) {
+		Chunk chunk = new Chunk();
+		chunk.hash = in.getLong();
+		chunk.count = in.getInt();
+		chunk.words = getInts(in, chunk.count);
+		chunk.refCount = in.getInt();
+		chunk.refPositions = getInts(in, chunk.refCount);
+		chunk.refSymbols = getInts(in, chunk.refCount);
+		if (!names) {
+			return chunk;
+		}
+		int labelCount = in.getInt();
+		for (int i = 0; i < labelCount; i++) {
+			chunk.labels.add(getName(in));
+			chunk.labelAddresses.add(in.getInt());
+		}
+		int symbolCount = in.getInt();
+		for (int i = 0; i < symbolCount; i++) {
+			chunk.symbols.add(getName(in));
+		}
+		return chunk;
+	}
+
+	//the ints are copied at once, the interpreter is slow at a loop of putInt()
+	static void putInts(ByteBuffer out, int[] ints, int length) {
+		out.asIntBuffer().put(ints, 0, length);
+		out.position(out.position() + length * 4);
+	}
+
+	static int[] getInts(ByteBuffer in, int length) {
+		int[] ints = new int[length];
+		in.asIntBuffer().get(ints);
+		in.position(in.position() + length * 4);
+		return ints;
+	}
+
+	//a label or symbol is saved as the length and the UTF-8 bytes
+	private static void putName(ByteBuffer out, String name) {
+		byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		out.putShort((short) bytes.length);
+		out.put(bytes);
+	}
+
+	private static String getName(ByteBuffer in) {
+		byte[] bytes = new byte[in.getShort() & 0xffff];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public int getBase() {
+		return base;
+	}
+
+	public void setBase(int base) {
+		this.base = base;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //lex and encode the lines of this chunk, the symbols are only collected, they
+	 * are resolved in patch() after all the chunks are scanned
+	 * @Date 13:08 2026/10/18
+	 * @Param [code]
+	 * @return void
+	 **/
+	public void scan(Code code) {
+		Lexer lexer = new Lexer(this.buffer, this.from, this.to);
+		//an empty table gives the ids 0, 1, 2... to the symbols in the order of first use
+		SymbolTable symbolIds = new SymbolTable(false);
+		while (lexer.advance()) {
+			switch (lexer.getCommandType()) {
+				case A_Command:
+					if (this.count == this.words.length) {
+						this.words = Arrays.copyOf(this.words, this.count * 2);
+					}
+					if (lexer.isDigitSymbol()) {
+						this.words[this.count] = lexer.symbolValue();
+					} else {
+						int id = symbolIds.getOrAllocate(lexer.getBuffer(), lexer.symbolStart(),
+								lexer.symbolEnd());
+						if (id == this.symbols.size()) {
+							this.symbols.add(lexer.symbol());
+						}
+						if (this.refCount == this.refPositions.length) {
+							this.refPositions = Arrays.copyOf(this.refPositions,
+									this.refCount * 2);
+							this.refSymbols = Arrays.copyOf(this.refSymbols, this.refCount * 2);
+						}
+						this.refPositions[this.refCount] = this.count;
+						this.refSymbols[this.refCount] = id;
+						this.refCount++;
+					}
+					this.count++;
+					break;
+				case C_Command:
+					if (this.count == this.words.length) {
+						this.words = Arrays.copyOf(this.words, this.count * 2);
+					}
+					int word = code.encode(lexer.getBuffer(), lexer.destStart(), lexer.destEnd(),
+							lexer.compStart(), lexer.compEnd(), lexer.jumpStart(), lexer.jumpEnd());
+					if (word < 0) {
+						throw new IllegalArgumentException("invalid command: "
+								+ lexer.getCurrentCommand());
+					}
+					this.words[this.count] = word;
+					this.count++;
+					break;
+				case L_Command:
+					if (!lexer.isDigitSymbol()) {
+						this.labels.add(lexer.symbol());
+						this.labelAddresses.add(this.count);
+					}
+					break;
+				default:
+					break;
+			}
+		}
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //add the labels of this chunk into the symbol table, base must be set
+	 * @Date 13:08 2026/10/18
+	 * @Param [symbolTable]
+	 * @return void
+	 **/
+	public void addLabels(SymbolTable symbolTable) {
+		for (int i = 0; i < this.labels.size(); i++) {
+			symbolTable.addEntry(this.labels.get(i), this.base + this.labelAddresses.get(i));
+		}
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //give addresses to the variables first used in this chunk and keep the
+	 * addresses of all its symbols for patch(). The chunks must be called in order after all the
+	 * labels are added, so the variables get the same addresses as the sequential assembler.
+	 * @Date 13:08 2026/10/18
+	 * @Param [symbolTable]
+	 * @return void
+	 **/
+	public void addVariables(SymbolTable symbolTable) {
+		this.addresses = new int[this.symbols.size()];
+		for (int i = 0; i < this.addresses.length; i++) {
+			String symbol = this.symbols.get(i);
+			int address = symbolTable.getOrAllocate(symbol);
+			this.addresses[i] = symbolTable.isLabel(symbol) ? ~address : address;
+		}
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //copy the words into [offset, offset + count) of the output and fill the
+	 * addresses of the symbols there, the words of this chunk are not changed
+	 * @Date 13:08 2026/10/18
+	 * @Param [output, offset]
+	 * @return void
+	 **/
+	public void patch(int[] output, int offset) {
+		System.arraycopy(this.words, 0, output, offset, this.count);
+		for (int i = 0; i < this.refCount; i++) {
+			int address = this.addresses[this.refSymbols[i]];
+			output[offset + this.refPositions[i]] = address < 0 ? ~address : address;
+		}
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //whether this chunk defines the same labels and uses the same symbols in the
+	 * same order of first use as other. Then this chunk can take the place of other and the
+	 * variables keep their addresses, only the labels may move.
+	 * @Date 15:05 2026/10/18
+	 * @Param [other]
+	 * @return boolean
+	 **/
+	public boolean hasSameSymbols(Chunk other) {
+		return this.labels.equals(other.labels) && this.symbols.equals(other.symbols);
+	}
+}
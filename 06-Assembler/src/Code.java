@@ -1,8 +1,212 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 /**
  * @Author HuangChuan
  * @Create in 2021/12/04 14:14
  */
 public class Code {
+	//the mnemonics and the bits of them, the bits are already shifted to their place in the
+	// C-Command: 111a cccc ccdd djjj
+	private static final String[] DEST_SYMBOLS = {"", "M", "D", "MD", "A", "AM", "AD", "AMD"};
+	private static final String[] COMP_SYMBOLS = {"0", "1", "-1", "D", "A", "M", "!D", "!A",
+			"!M", "-D", "-A", "-M", "D+1", "A+1", "M+1", "D-1", "A-1", "M-1", "D+A", "D+M", "D-A",
+			"D-M", "A-D", "M-D", "D&A", "D&M", "D|A", "D|M"};
+	private static final int[] COMP_BITS = {0b0101010, 0b0111111, 0b0111010, 0b0001100,
+			0b0110000, 0b1110000, 0b0001101, 0b0110001, 0b1110001, 0b0001111, 0b0110011,
+			0b1110011, 0b0011111, 0b0110111, 0b1110111, 0b0001110, 0b0110010, 0b1110010,
+			0b0000010, 0b1000010, 0b0010011, 0b1010011, 0b0000111, 0b1000111, 0b0000000,
+			0b1000000, 0b0010101, 0b1010101};
+	private static final String[] JUMP_SYMBOLS = {"", "JGT", "JEQ", "JGE", "JLT", "JNE", "JLE",
+			"JMP"};
+	//the lookup tables, indexed by the perfect hash of the mnemonic
+	private static final int TABLE_BITS = 6;
+	private static final int[] DEST_KEYS = new int[1 << TABLE_BITS];
+	private static final int[] DEST_TABLE = new int[1 << TABLE_BITS];
+	private static final int[] COMP_KEYS = new int[1 << TABLE_BITS];
+	private static final int[] COMP_TABLE = new int[1 << TABLE_BITS];
+	private static final int[] JUMP_KEYS = new int[1 << TABLE_BITS];
+	private static final int[] JUMP_TABLE = new int[1 << TABLE_BITS];
+	private static final int MULTIPLIER;
+
+	static {
+		int[] keys = new int[DEST_SYMBOLS.length + COMP_SYMBOLS.length + JUMP_SYMBOLS.length];
+		int n = 0;
+		for (String symbol : DEST_SYMBOLS) {
+			keys[n++] = key(symbol);
+		}
+		for (String symbol : COMP_SYMBOLS) {
+			keys[n++] = key(symbol);
+		}
+		for (String symbol : JUMP_SYMBOLS) {
+			keys[n++] = key(symbol);
+		}
+		//search a multiplier which has no collision in any of the three tables, so a lookup is
+		// one multiply, one shift and one compare
+		int multiplier = 0x9E3779B1;
+		while (!isPerfect(keys, 0, DEST_SYMBOLS.length, multiplier)
+				|| !isPerfect(keys, DEST_SYMBOLS.length, COMP_SYMBOLS.length, multiplier)
+				|| !isPerfect(keys, DEST_SYMBOLS.length + COMP_SYMBOLS.length,
+				JUMP_SYMBOLS.length, multiplier)) {
+			multiplier += 2;
+		}
+		MULTIPLIER = multiplier;
+		fill(DEST_KEYS, DEST_TABLE, DEST_SYMBOLS, null, 3);
+		fill(COMP_KEYS, COMP_TABLE, COMP_SYMBOLS, COMP_BITS, 6);
+		fill(JUMP_KEYS, JUMP_TABLE, JUMP_SYMBOLS, null, 0);
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //pack the mnemonic (at most 3 chars) into an int, the length is in the
+	 * highest byte so "" has a key too. The key of a too long mnemonic is -1.
+	 * @Date 13:05 2026/10/18
+	 * @Param [symbol]
+	 * @return int
+	 **/
+	private static int key(String symbol) {
+		int length = symbol.length();
+		if (length > 3) {
+			return -1;
+		}
+		int key = length << 24;
+		for (int i = 0; i < length; i++) {
+			key |= (symbol.charAt(i) & 0xff) << (8 * (2 - i));
+		}
+		return key;
+	}
+
+	private static int key(ByteBuffer buffer, int from, int to) {
+		int length = to - from;
+		if (length > 3) {
+			return -1;
+		}
+		int key = length << 24;
+		for (int i = 0; i < length; i++) {
+			key |= (buffer.get(from + i) & 0xff) << (8 * (2 - i));
+		}
+		return key;
+	}
+
+	private static int index(int key, int multiplier) {
+		return (key * multiplier) >>> (32 - TABLE_BITS);
+	}
+
+	private static boolean isPerfect(int[] keys, int from, int length, int multiplier) {
+		long used = 0;
+		for (int i = from; i < from + length; i++) {
+			long bit = 1L << index(keys[i], multiplier);
+			if ((used & bit) != 0) {
+				return false;
+			}
+			used |= bit;
+		}
+		return true;
+	}
+
+	private static void fill(int[] keys, int[] table, String[] symbols, int[] bits, int shift) {
+		Arrays.fill(keys, -1);
+		for (int i = 0; i < symbols.length; i++) {
+			int key = key(symbols[i]);
+			int index = index(key, MULTIPLIER);
+			keys[index] = key;
+			table[index] = (bits == null ? i : bits[i]) << shift;
+		}
+	}
+
+	private static int lookup(int[] keys, int[] table, int key) {
+		int index = index(key, MULTIPLIER);
+		if (key == -1 || keys[index] != key) {
+			return -1;
+		}
+		return table[index];
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //get the bits of the dest, comp and jump domain, already shifted to their
+	 * place in the C-Command. Return -1 if the mnemonic is not valid.
+	 * @Date 13:05 2026/10/18
+	 * @Param [symbol]
+	 * @return int
+	 **/
+	public int destBits(String symbol) {
+		return lookup(DEST_KEYS, DEST_TABLE, key(symbol));
+	}
+
+	public int compBits(String symbol) {
+		return lookup(COMP_KEYS, COMP_TABLE, key(symbol));
+	}
+
+	public int jumpBits(String symbol) {
+		return lookup(JUMP_KEYS, JUMP_TABLE, key(symbol));
+	}
+
+	public int destBits(ByteBuffer buffer, int from, int to) {
+		return lookup(DEST_KEYS, DEST_TABLE, key(buffer, from, to));
+	}
+
+	public int compBits(ByteBuffer buffer, int from, int to) {
+		return lookup(COMP_KEYS, COMP_TABLE, key(buffer, from, to));
+	}
+
+	public int jumpBits(ByteBuffer buffer, int from, int to) {
+		return lookup(JUMP_KEYS, JUMP_TABLE, key(buffer, from, to));
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //encode the C-Command into the 16 bit word, return -1 if any domain is not
+	 * valid
+	 * @Date 13:05 2026/10/18
+	 * @Param [dest, comp, jump]
+	 * @return int
+	 **/
+	public int encode(String dest, String comp, String jump) {
+		return combine(destBits(dest), compBits(comp), jumpBits(jump));
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //encode the C-Command whose domains are [destFrom, destTo), [compFrom,
+	 * compTo) and [jumpFrom, jumpTo) of the buffer, no string is created
+	 * @Date 13:05 2026/10/18
+	 * @Param [buffer, destFrom, destTo, compFrom, compTo, jumpFrom, jumpTo]
+	 * @return int
+	 **/
+	public int encode(ByteBuffer buffer, int destFrom, int destTo, int compFrom, int compTo,
+	                  int jumpFrom, int jumpTo) {
+		return combine(destBits(buffer, destFrom, destTo), compBits(buffer, compFrom, compTo),
+				jumpBits(buffer, jumpFrom, jumpTo));
+	}
+
+	private static int combine(int dest, int comp, int jump) {
+		if (dest < 0 || comp < 0 || jump < 0) {
+			return -1;
+		}
+		return 0xE000 | comp | dest | jump;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the binary string of the domain bits, used by the old string api
+	 * @Date 13:05 2026/10/18
+	 * @Param [bits, shift, length]
+	 * @return java.lang.String
+	 **/
+	private static String toBinary(int bits, int shift, int length) {
+		if (bits < 0) {
+			return null;
+		}
+		bits >>>= shift;
+		char[] chars = new char[length];
+		for (int i = length - 1; i >= 0; i--) {
+			chars[i] = (char) ('0' + (bits & 1));
+			bits >>>= 1;
+		}
+		return new String(chars);
+	}
+
 	/*
 	 * @Author HuangChuan
 	 * @Description //get the dest symbol domain
@@ -11,27 +215,7 @@ public class Code {
 	 * @return java.lang.String
 	 **/
 	public String dest(String symbol) {
-		switch (symbol) {
-			case "":
-				return "000";
-			case "M":
-				return "001";
-			case "D":
-				return "010";
-			case "MD":
-				return "011";
-			case "A":
-				return "100";
-			case "AM":
-				return "101";
-			case "AD":
-				return "110";
-			case "AMD":
-				return "111";
-			default:
-				break;
-		}
-		return null;
+		return toBinary(destBits(symbol), 3, 3);
 	}
 
 	/*
@@ -42,69 +226,7 @@ public class Code {
 	 * @return java.lang.String
 	 **/
 	public String comp(String symbol) {
-		switch (symbol) {
-			case "":
-				return null;
-			case "0":
-				return "0101010";
-			case "1":
-				return "0111111";
-			case "-1":
-				return "0111010";
-			case "D":
-				return "0001100";
-			case "A":
-				return "0110000";
-			case "M":
-				return "1110000";
-			case "!D":
-				return "0001101";
-			case "!A":
-				return "0110001";
-			case "!M":
-				return "1110001";
-			case "-D":
-				return "0001111";
-			case "-A":
-				return "0110011";
-			case "-M":
-				return "1110011";
-			case "D+1":
-				return "0011111";
-			case "A+1":
-				return "0110111";
-			case "M+1":
-				return "1110111";
-			case "D-1":
-				return "0001110";
-			case "A-1":
-				return "0110010";
-			case "M-1":
-				return "1110010";
-			case "D+A":
-				return "0000010";
-			case "D+M":
-				return "1000010";
-			case "D-A":
-				return "0010011";
-			case "D-M":
-				return "1010011";
-			case "A-D":
-				return "0000111";
-			case "M-D":
-				return "1000111";
-			case "D&A":
-				return "0000000";
-			case "D&M":
-				return "1000000";
-			case "D|A":
-				return "0010101";
-			case "D|M":
-				return "1010101";
-			default:
-				break;
-		}
-		return null;
+		return toBinary(compBits(symbol), 6, 7);
 	}
 
 	/*
@@ -115,28 +237,6 @@ public class Code {
 	 * @return java.lang.String
 	 **/
 	public String jump(String symbol) {
-		switch (symbol) {
-			case "":
-				return "000";
-			case "JGT":
-				return "001";
-			case "JEQ":
-				return "010";
-			case "JGE":
-				return "011";
-			case "JLT":
-				return "100";
-			case "JNE":
-				return "101";
-			case "JLE":
-				return "110";
-			case "JMP":
-				return "111";
-			default:
-				break;
-		}
-		return null;
+		return toBinary(jumpBits(symbol), 0, 3);
 	}
 }
-
-
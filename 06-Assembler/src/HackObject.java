@@ -0,0 +1,231 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:11
+ */
+public class HackObject {
+	//the first int of the object file
+	private static final int MAGIC = 0x484F424A;
+
+	//the encoded words, the address of a local label is relative to the start of this object,
+	// the imported symbols are 0
+	private int[] words;
+	//the labels defined in this object and their relative addresses
+	private String[] exports;
+	private int[] exportAddresses;
+	//the symbols used but not defined in this object, in the order of first use. The linker
+	// looks them up in the other objects, the rest get variable slots.
+	private String[] imports;
+	//the word at importPositions[i] uses imports[importSymbols[i]]
+	private int[] importPositions;
+	private int[] importSymbols;
+	//the words which hold the address of a local label, the linker adds the base to them
+	private int[] relocations;
+	//the address of the first word in the linked program
+	private int base;
+	//the name of the object file, null if the object isn't read from a file
+	private String name;
+
+	private HackObject() {
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //make the object from a scanned chunk, the uses of the labels of the chunk
+	 * become relocations and the other symbols become imports
+	 * @Date 13:11 2026/10/18
+	 * @Param [chunk]
+	 * @return HackObject
+	 **/
+	public static HackObject fromChunk(Chunk chunk) {
+		HackObject object = new HackObject();
+		object.words = Arrays.copyOf(chunk.getWords(), chunk.getCount());
+		ArrayList<String> labels = chunk.getLabels();
+		HashMap<String, Integer> local = new HashMap<>();
+		object.exports = labels.toArray(new String[0]);
+		object.exportAddresses = new int[labels.size()];
+		for (int i = 0; i < labels.size(); i++) {
+			object.exportAddresses[i] = chunk.getLabelAddresses().get(i);
+			local.put(labels.get(i), object.exportAddresses[i]);
+		}
+		ArrayList<String> symbols = chunk.getSymbols();
+		//the index of the symbol in imports, -1 if it is a local label
+		int[] importIds = new int[symbols.size()];
+		ArrayList<String> imports = new ArrayList<>();
+		for (int i = 0; i < symbols.size(); i++) {
+			if (local.containsKey(symbols.get(i))) {
+				importIds[i] = -1;
+			} else {
+				importIds[i] = imports.size();
+				imports.add(symbols.get(i));
+			}
+		}
+		object.imports = imports.toArray(new String[0]);
+		int refCount = chunk.getRefCount();
+		int[] positions = new int[refCount];
+		int[] ids = new int[refCount];
+		int[] relocations = new int[refCount];
+		int importCount = 0;
+		int relocationCount = 0;
+		for (int i = 0; i < refCount; i++) {
+			int position = chunk.getRefPositions()[i];
+			int symbol = chunk.getRefSymbols()[i];
+			if (importIds[symbol] < 0) {
+				object.words[position] = local.get(symbols.get(symbol));
+				relocations[relocationCount++] = position;
+			} else {
+				object.words[position] = 0;
+				positions[importCount] = position;
+				ids[importCount] = importIds[symbol];
+				importCount++;
+			}
+		}
+		object.importPositions = Arrays.copyOf(positions, importCount);
+		object.importSymbols = Arrays.copyOf(ids, importCount);
+		object.relocations = Arrays.copyOf(relocations, relocationCount);
+		return object;
+	}
+
+	public int getCount() {
+		return words.length;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getBase() {
+		return base;
+	}
+
+	public void setBase(int base) {
+		this.base = base;
+	}
+
+	public String[] getExports() {
+		return exports;
+	}
+
+	public int[] getExportAddresses() {
+		return exportAddresses;
+	}
+
+	public String[] getImports() {
+		return imports;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //relocate the words and fill the imported symbols, then copy the words into
+	 * [base, base + count) of the output. The symbol table must have all the exports of all the
+	 * objects and the variables.
+	 * @Date 13:11 2026/10/18
+	 * @Param [symbolTable, output]
+	 * @return void
+	 **/
+	public void linkInto(SymbolTable symbolTable, int[] output) {
+		System.arraycopy(this.words, 0, output, this.base, this.words.length);
+		for (int position : this.relocations) {
+			output[this.base + position] += this.base;
+		}
+		int[] addresses = new int[this.imports.length];
+		for (int i = 0; i < addresses.length; i++) {
+			addresses[i] = symbolTable.getAddress(this.imports[i]);
+		}
+		for (int i = 0; i < this.importPositions.length; i++) {
+			output[this.base + this.importPositions[i]] = addresses[this.importSymbols[i]];
+		}
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //write the object file
+	 * @Date 13:11 2026/10/18
+	 * @Param [file]
+	 * @return void
+	 **/
+	public void write(File file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(this.words.length);
+			for (int word : this.words) {
+				out.writeShort(word);
+			}
+			out.writeInt(this.exports.length);
+			for (int i = 0; i < this.exports.length; i++) {
+				out.writeUTF(this.exports[i]);
+				out.writeInt(this.exportAddresses[i]);
+			}
+			out.writeInt(this.imports.length);
+			for (String symbol : this.imports) {
+				out.writeUTF(symbol);
+			}
+			out.writeInt(this.importPositions.length);
+			for (int i = 0; i < this.importPositions.length; i++) {
+				out.writeInt(this.importPositions[i]);
+				out.writeInt(this.importSymbols[i]);
+			}
+			out.writeInt(this.relocations.length);
+			for (int position : this.relocations) {
+				out.writeInt(position);
+			}
+		}
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //read an object file written by write()
+	 * @Date 13:11 2026/10/18
+	 * @Param [file]
+	 * @return HackObject
+	 **/
+	public static HackObject read(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file), 1 << 16))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException(file.getName() + " is not a hack object file");
+			}
+			HackObject object = new HackObject();
+			object.name = file.getName();
+			object.words = new int[in.readInt()];
+			for (int i = 0; i < object.words.length; i++) {
+				object.words[i] = in.readUnsignedShort();
+			}
+			int exportCount = in.readInt();
+			object.exports = new String[exportCount];
+			object.exportAddresses = new int[exportCount];
+			for (int i = 0; i < exportCount; i++) {
+				object.exports[i] = in.readUTF();
+				object.exportAddresses[i] = in.readInt();
+			}
+			object.imports = new String[in.readInt()];
+			for (int i = 0; i < object.imports.length; i++) {
+				object.imports[i] = in.readUTF();
+			}
+			int importCount = in.readInt();
+			object.importPositions = new int[importCount];
+			object.importSymbols = new int[importCount];
+			for (int i = 0; i < importCount; i++) {
+				object.importPositions[i] = in.readInt();
+				object.importSymbols[i] = in.readInt();
+			}
+			object.relocations = new int[in.readInt()];
+			for (int i = 0; i < object.relocations.length; i++) {
+				object.relocations[i] = in.readInt();
+			}
+			return object;
+		}
+	}
+}
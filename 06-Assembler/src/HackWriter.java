@@ -0,0 +1,164 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:06
+ */
+public class HackWriter implements Closeable {
+	//the chars of the 8 bits of every byte value, so one word is two array copies
+	private static final byte[] BYTE_CHARS = new byte[256 * 8];
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	static {
+		for (int value = 0; value < 256; value++) {
+			for (int bit = 0; bit < 8; bit++) {
+				BYTE_CHARS[value * 8 + bit] = (byte) ((value & (0x80 >>> bit)) == 0 ? '0' : '1');
+			}
+		}
+	}
+
+	private WritableByteChannel channel;
+	private OutputFormat format;
+	//the reusable output buffer, it is written into the channel when it is full
+	private byte[] bytes;
+	private ByteBuffer buffer;
+	private int count;
+	private boolean closed;
+	//the file opened by this writer, it is cut at the end when it is closed
+	private FileChannel file;
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //create or open the output file, the old words after the written ones are cut
+	 * off by close(), so skip() can leave the old words which are still right
+	 * @Date 13:06 2026/10/18
+	 * @Param [file, format]
+	 * @return
+	 **/
+	public HackWriter(File file, OutputFormat format) throws IOException {
+		this(FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE), format);
+		this.file = (FileChannel) this.channel;
+	}
+
+	public HackWriter(WritableByteChannel channel, OutputFormat format) {
+		this.channel = channel;
+		this.format = format;
+		this.bytes = new byte[BUFFER_SIZE];
+		this.buffer = ByteBuffer.wrap(this.bytes);
+	}
+
+	public OutputFormat getFormat() {
+		return format;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the number of words written
+	 * @Date 13:06 2026/10/18
+	 * @Param []
+	 * @return int
+	 **/
+	public int getCount() {
+		return count;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //write one 16 bit word
+	 * @Date 13:06 2026/10/18
+	 * @Param [word]
+	 * @return void
+	 **/
+	public void write(int word) throws IOException {
+		int position = this.buffer.position();
+		if (this.format == OutputFormat.TEXT) {
+			if (position + 17 > BUFFER_SIZE) {
+				flush();
+				position = 0;
+			}
+			System.arraycopy(BYTE_CHARS, ((word >>> 8) & 0xff) * 8, this.bytes, position, 8);
+			System.arraycopy(BYTE_CHARS, (word & 0xff) * 8, this.bytes, position + 8, 8);
+			this.bytes[position + 16] = '\n';
+			this.buffer.position(position + 17);
+		} else {
+			if (position + 2 > BUFFER_SIZE) {
+				flush();
+				position = 0;
+			}
+			this.bytes[position] = (byte) (word >>> 8);
+			this.bytes[position + 1] = (byte) word;
+			this.buffer.position(position + 2);
+		}
+		this.count++;
+	}
+
+	public void write(int[] words, int from, int to) throws IOException {
+		for (int i = from; i < to; i++) {
+			write(words[i]);
+		}
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //go over the next n words of the file and keep what is there, it needs a
+	 * file, not a stream
+	 * @Date 15:05 2026/10/18
+	 * @Param [n]
+	 * @return void
+	 **/
+	public void skip(int n) throws IOException {
+		if (!(this.channel instanceof SeekableByteChannel)) {
+			throw new UnsupportedOperationException("only the words of a file can be skipped");
+		}
+		flush();
+		SeekableByteChannel file = (SeekableByteChannel) this.channel;
+		file.position(file.position() + (long) n * (this.format == OutputFormat.TEXT ? 17 : 2));
+		this.count += n;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //write the buffered bytes into the channel
+	 * @Date 13:06 2026/10/18
+	 * @Param []
+	 * @return void
+	 **/
+	public void flush() throws IOException {
+		this.buffer.flip();
+		while (this.buffer.hasRemaining()) {
+			this.channel.write(this.buffer);
+		}
+		this.buffer.clear();
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	//write the rest, cut the opened file after it and close the channel, the channel is closed
+	// even if the write fails
+	@Override
+	public void close() throws IOException {
+		if (this.closed) {
+			return;
+		}
+		this.closed = true;
+		try {
+			flush();
+			if (this.file != null) {
+				//a file of the same length is not changed
+				this.file.truncate(this.file.position());
+			}
+		} finally {
+			this.channel.close();
+		}
+	}
+}
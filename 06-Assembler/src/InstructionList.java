@@ -0,0 +1,135 @@
+import java.util.Arrays;
+
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:13
+ */
+public class InstructionList {
+	//the decoded commands: the type, the encoded word (the value of a numeric A-Command or the
+	// C-Command) and the symbol of an A-Command or L-Command (null if the A-Command is numeric)
+	private CommandType[] types = new CommandType[1024];
+	private int[] words = new int[1024];
+	private String[] symbols = new String[1024];
+	private int size;
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //decode the whole program, the symbols are not resolved
+	 * @Date 13:13 2026/10/18
+	 * @Param [lexer, code]
+	 * @return InstructionList
+	 **/
+	public static InstructionList decode(Lexer lexer, Code code) {
+		InstructionList list = new InstructionList();
+		while (lexer.advance()) {
+			switch (lexer.getCommandType()) {
+				case A_Command:
+					if (lexer.isDigitSymbol()) {
+						list.add(CommandType.A_Command, lexer.symbolValue(), null);
+					} else {
+						list.add(CommandType.A_Command, 0, lexer.symbol());
+					}
+					break;
+				case C_Command:
+					int word = code.encode(lexer.getBuffer(), lexer.destStart(), lexer.destEnd(),
+							lexer.compStart(), lexer.compEnd(), lexer.jumpStart(), lexer.jumpEnd());
+					if (word < 0) {
+						throw new IllegalArgumentException("invalid command at line "
+								+ lexer.getLineNumber() + ": " + lexer.getCurrentCommand());
+					}
+					list.add(CommandType.C_Command, word, null);
+					break;
+				case L_Command:
+					if (!lexer.isDigitSymbol()) {
+						list.add(CommandType.L_Command, 0, lexer.symbol());
+					}
+					break;
+				default:
+					break;
+			}
+		}
+		return list;
+	}
+
+	public void add(CommandType type, int word, String symbol) {
+		if (this.size == this.types.length) {
+			this.types = Arrays.copyOf(this.types, this.size * 2);
+			this.words = Arrays.copyOf(this.words, this.size * 2);
+			this.symbols = Arrays.copyOf(this.symbols, this.size * 2);
+		}
+		this.types[this.size] = type;
+		this.words[this.size] = word;
+		this.symbols[this.size] = symbol;
+		this.size++;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public CommandType getType(int i) {
+		return types[i];
+	}
+
+	public int getWord(int i) {
+		return words[i];
+	}
+
+	public String getSymbol(int i) {
+		return symbols[i];
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //remove the commands whose flag is true, the order of the rest is kept
+	 * @Date 13:13 2026/10/18
+	 * @Param [removed]
+	 * @return void
+	 **/
+	public void removeAll(boolean[] removed) {
+		int n = 0;
+		for (int i = 0; i < this.size; i++) {
+			if (!removed[i]) {
+				this.types[n] = this.types[i];
+				this.words[n] = this.words[i];
+				this.symbols[n] = this.symbols[i];
+				n++;
+			}
+		}
+		Arrays.fill(this.symbols, n, this.size, null);
+		this.size = n;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //give addresses to the labels and the variables, and return the encoded
+	 * words. The variables get addresses in the order of their first use.
+	 * @Date 13:13 2026/10/18
+	 * @Param [symbolTable]
+	 * @return int[]
+	 **/
+	public int[] encode(SymbolTable symbolTable) {
+		int count = 0;
+		for (int i = 0; i < this.size; i++) {
+			if (this.types[i] == CommandType.L_Command) {
+				symbolTable.addEntry(this.symbols[i], count);
+			} else {
+				count++;
+			}
+		}
+		int[] output = new int[count];
+		count = 0;
+		for (int i = 0; i < this.size; i++) {
+			if (this.types[i] == CommandType.L_Command) {
+				continue;
+			}
+			if (this.symbols[i] != null) {
+				output[count] = symbolTable.getOrAllocate(this.symbols[i]);
+			} else {
+				output[count] = this.words[i];
+			}
+			count++;
+		}
+		return output;
+	}
+}
@@ -0,0 +1,289 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:05
+ */
+public class Lexer {
+	//the content of the program file
+	private ByteBuffer buffer;
+	//the start of the next line, and the end of the part we should lex
+	private int position;
+	private int limit;
+	private CommandType commandType;
+	//the current command without spaces and comment is [start, end)
+	private int start;
+	private int end;
+	//the whole current source line is [lineStart, lineEnd)
+	private int lineStart;
+	private int lineEnd;
+	private int lineNumber;
+	//the index of '=' and ';' in the current command, -1 if the command has not it
+	private int equalIndex;
+	private int semicolonIndex;
+	//count the address of the instructions
+	private int address;
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //map the whole file into memory, the lines are read from the buffer directly
+	 * @Date 13:05 2026/10/18
+	 * @Param [file]
+	 * @return
+	 **/
+	public Lexer(File file) throws IOException {
+		this(map(file));
+	}
+
+	public Lexer(ByteBuffer buffer) {
+		this(buffer, 0, buffer.limit());
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //only lex the lines in [from, to) of the buffer, from should be the start of
+	 * a line
+	 * @Date 13:05 2026/10/18
+	 * @Param [buffer, from, to]
+	 * @return
+	 **/
+	public Lexer(ByteBuffer buffer, int from, int to) {
+		this.buffer = buffer;
+		this.position = from;
+		this.limit = to;
+		this.commandType = CommandType.UNKNOWN;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //map the file read only, the mapping is still valid after the channel closed
+	 * @Date 13:05 2026/10/18
+	 * @Param [file]
+	 * @return java.nio.ByteBuffer
+	 **/
+	public static ByteBuffer map(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+		     FileChannel channel = raf.getChannel()) {
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+
+	public ByteBuffer getBuffer() {
+		return buffer;
+	}
+
+	public CommandType getCommandType() {
+		return commandType;
+	}
+
+	public int getAddress() {
+		return address;
+	}
+
+	public int getLineNumber() {
+		return lineNumber;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //go to the next command, skip the space lines and comment lines. The command
+	 * type is decided by the first char, so we needn't look at the command again.
+	 * @Date 13:05 2026/10/18
+	 * @Param []
+	 * @return boolean false if there is no more command
+	 **/
+	public boolean advance() {
+		ByteBuffer buf = this.buffer;
+		int pos = this.position;
+		while (pos < this.limit) {
+			int begin = pos;
+			int first = -1;
+			int last = -1;
+			int equal = -1;
+			int semicolon = -1;
+			boolean comment = false;
+			while (pos < this.limit) {
+				byte b = buf.get(pos);
+				if (b == '\n') {
+					break;
+				}
+				if (!comment) {
+					if (b == '/' && pos + 1 < this.limit && buf.get(pos + 1) == '/') {
+						comment = true;
+					} else if (b != ' ' && b != '\t' && b != '\r') {
+						if (first < 0) {
+							first = pos;
+						}
+						last = pos;
+						if (b == '=') {
+							equal = pos;
+						} else if (b == ';') {
+							semicolon = pos;
+						}
+					}
+				}
+				pos++;
+			}
+			this.lineNumber++;
+			this.lineStart = begin;
+			this.lineEnd = pos;
+			//skip the '\n'
+			pos++;
+			if (first < 0) {
+				continue;
+			}
+			this.position = pos;
+			this.start = first;
+			this.end = last + 1;
+			this.equalIndex = equal;
+			this.semicolonIndex = semicolon;
+			byte head = buf.get(first);
+			if (head == '@') {
+				this.commandType = CommandType.A_Command;
+				this.address++;
+			} else if (head == '(') {
+				this.commandType = CommandType.L_Command;
+			} else if (equal >= 0 || semicolon >= 0) {
+				this.commandType = CommandType.C_Command;
+				this.address++;
+			} else {
+				this.commandType = CommandType.UNKNOWN;
+			}
+			return true;
+		}
+		this.position = pos;
+		this.commandType = CommandType.UNKNOWN;
+		return false;
+	}
+
+	public byte byteAt(int index) {
+		return this.buffer.get(index);
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the symbol of A-Command (after '@') or L-Command (between '(' and ')')
+	 * @Date 13:05 2026/10/18
+	 * @Param []
+	 * @return int
+	 **/
+	public int symbolStart() {
+		return this.start + 1;
+	}
+
+	public int symbolEnd() {
+		if (this.commandType == CommandType.L_Command) {
+			return this.end - 1;
+		}
+		return this.end;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the dest domain of the C-Command, it is empty if the command has no '='
+	 * @Date 13:05 2026/10/18
+	 * @Param []
+	 * @return int
+	 **/
+	public int destStart() {
+		return this.start;
+	}
+
+	public int destEnd() {
+		return this.equalIndex < 0 ? this.start : this.equalIndex;
+	}
+
+	public int compStart() {
+		return this.equalIndex < 0 ? this.start : this.equalIndex + 1;
+	}
+
+	public int compEnd() {
+		return this.semicolonIndex < 0 ? this.end : this.semicolonIndex;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the jump domain of the C-Command, it is empty if the command has no ';'
+	 * @Date 13:05 2026/10/18
+	 * @Param []
+	 * @return int
+	 **/
+	public int jumpStart() {
+		return this.semicolonIndex < 0 ? this.end : this.semicolonIndex + 1;
+	}
+
+	public int jumpEnd() {
+		return this.end;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //Judge whether the symbol is integer symbol
+	 * @Date 13:05 2026/10/18
+	 * @Param []
+	 * @return boolean
+	 **/
+	public boolean isDigitSymbol() {
+		int from = symbolStart();
+		int to = symbolEnd();
+		for (int i = from; i < to; i++) {
+			byte b = this.buffer.get(i);
+			if (b < '0' || b > '9') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the value of the integer symbol
+	 * @Date 13:05 2026/10/18
+	 * @Param []
+	 * @return int
+	 **/
+	public int symbolValue() {
+		int value = 0;
+		int to = symbolEnd();
+		for (int i = symbolStart(); i < to; i++) {
+			value = value * 10 + (this.buffer.get(i) - '0');
+		}
+		return value;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the following methods create strings, they are only used when we really
+	 * need the text, like printing or the first time we meet a symbol
+	 * @Date 13:05 2026/10/18
+	 * @Param [from, to]
+	 * @return java.lang.String
+	 **/
+	public String text(int from, int to) {
+		char[] chars = new char[to - from];
+		for (int i = from; i < to; i++) {
+			chars[i - from] = (char) (this.buffer.get(i) & 0xff);
+		}
+		return new String(chars);
+	}
+
+	public String symbol() {
+		return text(symbolStart(), symbolEnd());
+	}
+
+	public String getCurrentCommand() {
+		return text(this.start, this.end);
+	}
+
+	public String getCurrentLine() {
+		int to = this.lineEnd;
+		if (to > this.lineStart && this.buffer.get(to - 1) == '\r') {
+			to--;
+		}
+		return text(this.lineStart, to);
+	}
+}
@@ -0,0 +1,95 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:11
+ */
+public class Linker {
+	private SymbolTable symbolTable;
+	private ArrayList<HackObject> objects = new ArrayList<>();
+
+	public Linker() {
+		this.symbolTable = new SymbolTable();
+	}
+
+	public SymbolTable getSymbolTable() {
+		return symbolTable;
+	}
+
+	public void add(HackObject object) {
+		this.objects.add(object);
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //link the objects in the order they are added. The objects are put one after
+	 * another, all the labels are added into the symbol table first, then the imports which are
+	 * not a label of any object get variable slots from 16 in the order of the objects, so the
+	 * result is the same as assembling the concatenated source files. A label exported by two
+	 * objects is an error.
+	 * @Date 13:11 2026/10/18
+	 * @Param []
+	 * @return int[]
+	 **/
+	public int[] link() {
+		int count = 0;
+		//the object which exports the label
+		HashMap<String, Integer> owners = new HashMap<>();
+		for (int j = 0; j < this.objects.size(); j++) {
+			HackObject object = this.objects.get(j);
+			object.setBase(count);
+			String[] exports = object.getExports();
+			int[] addresses = object.getExportAddresses();
+			for (int i = 0; i < exports.length; i++) {
+				Integer owner = owners.putIfAbsent(exports[i], j);
+				if (owner != null) {
+					throw new IllegalArgumentException("the label " + exports[i]
+							+ " is exported by both " + nameOf(owner) + " and " + nameOf(j));
+				}
+				this.symbolTable.addEntry(exports[i], count + addresses[i]);
+			}
+			count += object.getCount();
+		}
+		for (HackObject object : this.objects) {
+			for (String symbol : object.getImports()) {
+				this.symbolTable.getOrAllocate(symbol);
+			}
+		}
+		int[] words = new int[count];
+		for (HackObject object : this.objects) {
+			object.linkInto(this.symbolTable, words);
+		}
+		return words;
+	}
+
+	//the file name of the object, or its position when it isn't read from a file
+	private String nameOf(int index) {
+		String name = this.objects.get(index).getName();
+		return name != null ? name : "object " + (index + 1);
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage:java Linker [-binary] output objectFile...");
+			return;
+		}
+		int i = 0;
+		OutputFormat format = OutputFormat.TEXT;
+		if (args[0].equals("-binary")) {
+			format = OutputFormat.BINARY;
+			i++;
+		}
+		File output = new File(args[i++]);
+		Linker linker = new Linker();
+		for (; i < args.length; i++) {
+			linker.add(HackObject.read(new File(args[i])));
+		}
+		int[] words = linker.link();
+		HackWriter hackWriter = new HackWriter(output, format);
+		hackWriter.write(words, 0, words.length);
+		hackWriter.close();
+	}
+}
@@ -0,0 +1,181 @@
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:07
+ */
+public class ListingWriter implements Closeable {
+	//the entries are handed to the writer thread in batches, so the assembler only touches the
+	// queue once every BATCH_SIZE lines
+	private static final int BATCH_SIZE = 1024;
+	private static final int QUEUE_SIZE = 64;
+	//put into the queue to tell the writer thread to stop
+	private static final Batch END = new Batch();
+
+	private ArrayBlockingQueue<Batch> queue;
+	private Batch current;
+	private Thread thread;
+	private BufferedWriter writer;
+	//the exception thrown in the writer thread, it is thrown again in close()
+	private volatile IOException exception;
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //one line of the listing: the address, the source line, the encoded word (-1
+	 * for L-Command) and the resolved symbol (null if the command has no symbol)
+	 * @Date 13:07 2026/10/18
+	 **/
+	private static class Batch {
+		int size;
+		int[] addresses = new int[BATCH_SIZE];
+		String[] sources = new String[BATCH_SIZE];
+		int[] words = new int[BATCH_SIZE];
+		String[] symbols = new String[BATCH_SIZE];
+		int[] values = new int[BATCH_SIZE];
+	}
+
+	public ListingWriter(File file) throws IOException {
+		this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file)));
+		this.queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+		this.current = new Batch();
+		this.thread = new Thread(this::writeLoop, "listing-writer");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //add a line to the listing, this method only stores the values, the line is
+	 * formatted and written by the writer thread
+	 * @Date 13:07 2026/10/18
+	 * @Param [address, source, word, symbol, value]
+	 * @return void
+	 **/
+	public void add(int address, String source, int word, String symbol, int value)
+			throws IOException {
+		Batch batch = this.current;
+		int i = batch.size;
+		batch.addresses[i] = address;
+		batch.sources[i] = source;
+		batch.words[i] = word;
+		batch.symbols[i] = symbol;
+		batch.values[i] = value;
+		batch.size++;
+		if (batch.size == BATCH_SIZE) {
+			submit();
+		}
+	}
+
+	private void submit() throws IOException {
+		if (this.exception != null) {
+			throw this.exception;
+		}
+		try {
+			this.queue.put(this.current);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		}
+		this.current = new Batch();
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the loop of the writer thread, it stops when it gets END
+	 * @Date 13:07 2026/10/18
+	 * @Param []
+	 * @return void
+	 **/
+	private void writeLoop() {
+		char[] bits = new char[16];
+		try {
+			while (true) {
+				Batch batch = this.queue.take();
+				if (batch == END) {
+					break;
+				}
+				for (int i = 0; i < batch.size; i++) {
+					writeLine(batch, i, bits);
+				}
+			}
+			this.writer.flush();
+		} catch (IOException e) {
+			this.exception = e;
+			//keep taking the batches, so the assembler is never blocked by a dead writer
+			drain();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void drain() {
+		try {
+			Batch batch;
+			do {
+				batch = this.queue.take();
+			} while (batch != END);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void writeLine(Batch batch, int i, char[] bits) throws IOException {
+		String address = String.valueOf(batch.addresses[i]);
+		for (int pad = address.length(); pad < 5; pad++) {
+			this.writer.write(' ');
+		}
+		this.writer.write(address);
+		this.writer.write("  ");
+		int word = batch.words[i];
+		if (word < 0) {
+			this.writer.write("                ");
+		} else {
+			for (int bit = 15; bit >= 0; bit--) {
+				bits[bit] = (char) ('0' + (word & 1));
+				word >>>= 1;
+			}
+			this.writer.write(bits);
+		}
+		this.writer.write("  ");
+		this.writer.write(batch.sources[i]);
+		if (batch.symbols[i] != null) {
+			this.writer.write("\t\t");
+			this.writer.write(batch.symbols[i]);
+			this.writer.write('=');
+			this.writer.write(String.valueOf(batch.values[i]));
+		}
+		this.writer.write('\n');
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //write the rest lines and wait for the writer thread
+	 * @Date 13:07 2026/10/18
+	 * @Param []
+	 * @return void
+	 **/
+	@Override
+	public void close() throws IOException {
+		if (this.current.size > 0) {
+			submit();
+		}
+		try {
+			this.queue.put(END);
+			this.thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} finally {
+			this.writer.close();
+		}
+		if (this.exception != null) {
+			throw this.exception;
+		}
+	}
+}
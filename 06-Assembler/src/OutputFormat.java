@@ -0,0 +1,12 @@
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:06
+ */
+public enum OutputFormat {
+	//one "0101..." line per instruction, the same as the course .hack file
+	TEXT,
+	//2 bytes per instruction, big-endian, can be mapped into memory directly
+	BINARY,
+	//a relocatable object file for the Linker, written by Assembler.objectScanFile()
+	OBJECT;
+}
@@ -1,3 +1,4 @@
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.util.Scanner;
@@ -6,7 +7,7 @@ import java.util.Scanner;
  * @Author HuangChuan
  * @Create in 2021/12/03 17:31
  */
-public class Parser {
+public class Parser implements Closeable {
 	//the file will be parsed
 	private File file;
 	private Scanner scanner;
@@ -72,6 +73,12 @@ public class Parser {
 		}
 	}
 
+	//close the file, a scan which stops at an error doesn't read to the end
+	@Override
+	public void close() {
+		this.scanner.close();
+	}
+
 
 	/*
 	 * @Author HuangChuan
@@ -147,10 +154,14 @@ public class Parser {
 	 * @return java.lang.String
 	 **/
 	public String paddingZero(String str) {
-		while (str.length() <= 15) {
-			str = "0" + str;
+		if (str.length() > 15) {
+			return str;
+		}
+		StringBuilder builder = new StringBuilder(16);
+		for (int i = str.length(); i < 16; i++) {
+			builder.append('0');
 		}
-		return str;
+		return builder.append(str).toString();
 	}
 
 	/*
@@ -0,0 +1,214 @@
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:13
+ */
+public class PeepholeOptimizer {
+	//the comp (with the a bit) and dest domains of the C-Command
+	private static final int COMP_D = 0b0001100;
+	private static final int COMP_M = 0b1110000;
+	private static final int COMP_M_PLUS_1 = 0b1110111;
+	private static final int COMP_M_MINUS_1 = 0b1110010;
+	private static final int DEST_M = 1;
+	private static final int DEST_D = 2;
+	private static final int DEST_A = 4;
+	//what we know about the A register
+	private static final int A_UNKNOWN = 0;
+	//A holds the value of aKey
+	private static final int A_VALUE = 1;
+	//A holds RAM[aKey]
+	private static final int A_DEREF = 2;
+
+	//the patterns and the number of commands removed by each of them
+	private static final String[] PATTERNS = {"@X M=M+1 followed by M=M-1",
+			"@X when A is already X", "@X A=M when A is already RAM[X]",
+			"D=M when D is already RAM[A]"};
+	private static final int INC_DEC = 0;
+	private static final int SAME_A = 1;
+	private static final int RELOAD_A = 2;
+	private static final int RELOAD_D = 3;
+	private int[] removedCounts = new int[PATTERNS.length];
+
+	private int aState;
+	private String aKey;
+	//D holds RAM[dKey], null if we don't know
+	private String dKey;
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //remove the redundant commands until nothing can be removed. A label starts a
+	 * new basic block, we forget everything we know about the registers there, so the
+	 * commands after a label are correct whichever way we come. A jump needn't end the block:
+	 * the next command is only reached by falling through unless it has a label. This assumes
+	 * the program only jumps to labels, a jump to a numeric address is wrong after the
+	 * commands move.
+	 * @Date 13:13 2026/10/18
+	 * @Param [list]
+	 * @return int the number of removed commands
+	 **/
+	public int optimize(InstructionList list) {
+		int total = 0;
+		int removed;
+		do {
+			removed = removeReloads(list) + removeIncDec(list);
+			total += removed;
+		} while (removed > 0);
+		return total;
+	}
+
+	public String getReport() {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < PATTERNS.length; i++) {
+			builder.append(PATTERNS[i]).append(": ").append(this.removedCounts[i]).append(
+					" removed\n");
+		}
+		return builder.toString();
+	}
+
+	private static int comp(int word) {
+		return (word >>> 6) & 0x7F;
+	}
+
+	private static int dest(int word) {
+		return (word >>> 3) & 0x7;
+	}
+
+	private static int jump(int word) {
+		return word & 0x7;
+	}
+
+	private static boolean is(InstructionList list, int i, int comp, int dest) {
+		if (i >= list.size() || list.getType(i) != CommandType.C_Command) {
+			return false;
+		}
+		int word = list.getWord(i);
+		return comp(word) == comp && dest(word) == dest && jump(word) == 0;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //M=M+1 right after M=M-1 (or the other order) uses the same A, so the two
+	 * commands do nothing together
+	 * @Date 13:13 2026/10/18
+	 * @Param [list]
+	 * @return int
+	 **/
+	private int removeIncDec(InstructionList list) {
+		boolean[] removed = new boolean[list.size()];
+		int count = 0;
+		for (int i = 0; i + 1 < list.size(); i++) {
+			if ((is(list, i, COMP_M_PLUS_1, DEST_M) && is(list, i + 1, COMP_M_MINUS_1, DEST_M))
+					|| (is(list, i, COMP_M_MINUS_1, DEST_M) && is(list, i + 1, COMP_M_PLUS_1,
+					DEST_M))) {
+				removed[i] = true;
+				removed[i + 1] = true;
+				count += 2;
+				i++;
+			}
+		}
+		if (count > 0) {
+			list.removeAll(removed);
+			this.removedCounts[INC_DEC] += count;
+		}
+		return count;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //go through the commands and remember what A and D hold, remove the commands
+	 * which load the value the register already has
+	 * @Date 13:13 2026/10/18
+	 * @Param [list]
+	 * @return int
+	 **/
+	private int removeReloads(InstructionList list) {
+		boolean[] removed = new boolean[list.size()];
+		int count = 0;
+		forget();
+		for (int i = 0; i < list.size(); i++) {
+			switch (list.getType(i)) {
+				case L_Command:
+					forget();
+					break;
+				case A_Command:
+					String key = list.getSymbol(i) != null ? list.getSymbol(i) :
+							String.valueOf(list.getWord(i));
+					if (this.aState == A_VALUE && this.aKey.equals(key)) {
+						removed[i] = true;
+						count++;
+						this.removedCounts[SAME_A]++;
+					} else if (this.aState == A_DEREF && this.aKey.equals(key)
+							&& is(list, i + 1, COMP_M, DEST_A)) {
+						removed[i] = true;
+						removed[i + 1] = true;
+						count += 2;
+						this.removedCounts[RELOAD_A] += 2;
+						i++;
+					} else {
+						this.aState = A_VALUE;
+						this.aKey = key;
+					}
+					break;
+				case C_Command:
+					if (is(list, i, COMP_M, DEST_D) && this.aState == A_VALUE
+							&& this.aKey.equals(this.dKey)) {
+						removed[i] = true;
+						count++;
+						this.removedCounts[RELOAD_D]++;
+					} else {
+						execute(list.getWord(i));
+					}
+					break;
+				default:
+					break;
+			}
+		}
+		if (count > 0) {
+			list.removeAll(removed);
+		}
+		return count;
+	}
+
+	private void forget() {
+		this.aState = A_UNKNOWN;
+		this.aKey = null;
+		this.dKey = null;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //update what we know after the C-Command. The comp is computed with the old
+	 * A, and M is written at the old A. A write into memory may change any RAM[X] we
+	 * remember, unless the written value is D itself.
+	 * @Date 13:13 2026/10/18
+	 * @Param [word]
+	 * @return void
+	 **/
+	private void execute(int word) {
+		int comp = comp(word);
+		int dest = dest(word);
+		int newAState = this.aState;
+		String newAKey = this.aKey;
+		String newDKey = this.dKey;
+		if ((dest & DEST_D) != 0) {
+			boolean loadsMemory = comp == COMP_M || (dest & DEST_M) != 0;
+			newDKey = this.aState == A_VALUE && loadsMemory ? this.aKey : null;
+		} else if ((dest & DEST_M) != 0) {
+			//M=D: now D is RAM[A] too
+			newDKey = comp != COMP_D ? null : this.aState == A_VALUE ? this.aKey : this.dKey;
+		}
+		if ((dest & DEST_A) != 0) {
+			if (comp == COMP_M && dest == DEST_A && this.aState == A_VALUE) {
+				newAState = A_DEREF;
+			} else {
+				newAState = A_UNKNOWN;
+				newAKey = null;
+			}
+		} else if ((dest & DEST_M) != 0 && newAState == A_DEREF) {
+			newAState = A_UNKNOWN;
+			newAKey = null;
+		}
+		this.aState = newAState;
+		this.aKey = newAKey;
+		this.dKey = newDKey;
+	}
+}
@@ -1,12 +1,24 @@
-import java.util.HashMap;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
  * @Author HuangChuan
  * @Create in 2021/12/04 15:01
  */
-public class SymbolTable {
-	//the String represent the symbol, the Integer represent the decimal address of the symbol
-	private HashMap<String, Integer> table;
+public final class SymbolTable {
+	//an open addressing table: the symbol, its hash and its decimal address are kept in three
+	// arrays with the same index, so there is no boxing and one probe finds the address
+	private String[] keys;
+	private int[] hashes;
+	private int[] addresses;
+	//true if the symbol is a label, added by addEntry() after the predefined symbols
+	private boolean[] labels;
+	private int size;
+	//the address given to the next new variable
+	private int freeVarAddress = 16;
 
 	/*
 	 * @Author HuangChuan
@@ -16,7 +28,26 @@ public class SymbolTable {
 	 * @return
 	 **/
 	public SymbolTable() {
-		this.table = new HashMap<>();
+		this(true);
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //an empty table is used to give ids to symbols, in that case the first
+	 * "variable" gets 0
+	 * @Date 13:09 2026/10/18
+	 * @Param [predefined]
+	 * @return
+	 **/
+	public SymbolTable(boolean predefined) {
+		this.keys = new String[64];
+		this.hashes = new int[64];
+		this.addresses = new int[64];
+		this.labels = new boolean[64];
+		if (!predefined) {
+			this.freeVarAddress = 0;
+			return;
+		}
 		addEntry("SP", 0);
 		addEntry("LCL", 1);
 		addEntry("ARG", 2);
@@ -27,6 +58,117 @@ public class SymbolTable {
 		}
 		addEntry("SCREEN", 16384);
 		addEntry("KBD", 24576);
+		Arrays.fill(this.labels, false);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getFreeVarAddress() {
+		return freeVarAddress;
+	}
+
+	public void setFreeVarAddress(int freeVarAddress) {
+		this.freeVarAddress = freeVarAddress;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the hash of the bytes is the same as String.hashCode() of the ascii symbol,
+	 * so a symbol in the buffer and the same symbol in a String find the same slot
+	 * @Date 13:09 2026/10/18
+	 * @Param [buffer, from, to]
+	 * @return int
+	 **/
+	private static int hash(ByteBuffer buffer, int from, int to) {
+		int h = 0;
+		for (int i = from; i < to; i++) {
+			h = 31 * h + (buffer.get(i) & 0xff);
+		}
+		return h;
+	}
+
+	private static int spread(int h) {
+		return h ^ (h >>> 16);
+	}
+
+	private static boolean equals(String key, ByteBuffer buffer, int from, int to) {
+		if (key.length() != to - from) {
+			return false;
+		}
+		for (int i = from; i < to; i++) {
+			if (key.charAt(i - from) != (buffer.get(i) & 0xff)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //find the slot of the symbol, if the symbol is not in the table, return the
+	 * empty slot where it should be put
+	 * @Date 13:09 2026/10/18
+	 * @Param [symbol, h]
+	 * @return int
+	 **/
+	private int slot(String symbol, int h) {
+		int mask = this.keys.length - 1;
+		int i = spread(h) & mask;
+		while (this.keys[i] != null) {
+			if (this.hashes[i] == h && this.keys[i].equals(symbol)) {
+				return i;
+			}
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	private int slot(ByteBuffer buffer, int from, int to, int h) {
+		int mask = this.keys.length - 1;
+		int i = spread(h) & mask;
+		while (this.keys[i] != null) {
+			if (this.hashes[i] == h && equals(this.keys[i], buffer, from, to)) {
+				return i;
+			}
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	private void put(int slot, String symbol, int h, int address, boolean label) {
+		if (this.keys[slot] == null) {
+			this.keys[slot] = symbol;
+			this.hashes[slot] = h;
+			this.size++;
+		}
+		this.addresses[slot] = address;
+		this.labels[slot] = label;
+		//keep the table at most half full
+		if (this.size * 2 > this.keys.length) {
+			resize();
+		}
+	}
+
+	private void resize() {
+		String[] oldKeys = this.keys;
+		int[] oldHashes = this.hashes;
+		int[] oldAddresses = this.addresses;
+		boolean[] oldLabels = this.labels;
+		this.keys = new String[oldKeys.length * 2];
+		this.hashes = new int[oldKeys.length * 2];
+		this.addresses = new int[oldKeys.length * 2];
+		this.labels = new boolean[oldKeys.length * 2];
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != null) {
+				int slot = slot(oldKeys[i], oldHashes[i]);
+				this.keys[slot] = oldKeys[i];
+				this.hashes[slot] = oldHashes[i];
+				this.addresses[slot] = oldAddresses[i];
+				this.labels[slot] = oldLabels[i];
+			}
+		}
 	}
 
 	/*
@@ -36,8 +178,16 @@ public class SymbolTable {
 	 * @Param [symbol, address]
 	 * @return void
 	 **/
-	public void addEntry(String symbol, Integer address) {
-		this.table.put(symbol, address);
+	public void addEntry(String symbol, int address) {
+		int h = symbol.hashCode();
+		put(slot(symbol, h), symbol, h, address, true);
+	}
+
+	public void addEntry(ByteBuffer buffer, int from, int to, int address) {
+		int h = hash(buffer, from, to);
+		int slot = slot(buffer, from, to, h);
+		String symbol = this.keys[slot];
+		put(slot, symbol == null ? text(buffer, from, to) : symbol, h, address, true);
 	}
 
 	/*
@@ -48,24 +198,141 @@ public class SymbolTable {
 	 * @return boolean
 	 **/
 	public boolean contains(String symbol) {
-		if (this.table.containsKey(symbol)) {
-			return true;
-		} else {
-			return false;
-		}
+		return this.keys[slot(symbol, symbol.hashCode())] != null;
 	}
 
 	/*
 	 * @Author HuangChuan
-	 * @Description //get the address of the symbol
+	 * @Description //get the address of the symbol, -1 if the symbol is not in the table
 	 * @Date 15:25 2021/12/4
 	 * @Param [symbol]
 	 * @return int
 	 **/
 	public int getAddress(String symbol) {
-		if (contains(symbol)) {
-			return this.table.get(symbol);
+		int slot = slot(symbol, symbol.hashCode());
+		return this.keys[slot] == null ? -1 : this.addresses[slot];
+	}
+
+	public int getAddress(ByteBuffer buffer, int from, int to) {
+		int slot = slot(buffer, from, to, hash(buffer, from, to));
+		return this.keys[slot] == null ? -1 : this.addresses[slot];
+	}
+
+	//whether the symbol is a label, the predefined symbols and the variables are not
+	public boolean isLabel(String symbol) {
+		int slot = slot(symbol, symbol.hashCode());
+		return this.keys[slot] != null && this.labels[slot];
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //get the address of the symbol, if it is a new symbol, it is a variable, give
+	 * it the next free address. This is one probe instead of contains() + getAddress() +
+	 * addEntry().
+	 * @Date 13:09 2026/10/18
+	 * @Param [symbol]
+	 * @return int
+	 **/
+	public int getOrAllocate(String symbol) {
+		int h = symbol.hashCode();
+		int slot = slot(symbol, h);
+		if (this.keys[slot] != null) {
+			return this.addresses[slot];
+		}
+		int address = this.freeVarAddress++;
+		put(slot, symbol, h, address, false);
+		return address;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the same as getOrAllocate(String), the symbol is [from, to) of the buffer,
+	 * a String is only created when the symbol is new
+	 * @Date 13:09 2026/10/18
+	 * @Param [buffer, from, to]
+	 * @return int
+	 **/
+	public int getOrAllocate(ByteBuffer buffer, int from, int to) {
+		int h = hash(buffer, from, to);
+		int slot = slot(buffer, from, to, h);
+		if (this.keys[slot] != null) {
+			return this.addresses[slot];
+		}
+		int address = this.freeVarAddress++;
+		put(slot, text(buffer, from, to), h, address, false);
+		return address;
+	}
+
+	private static String text(ByteBuffer buffer, int from, int to) {
+		char[] chars = new char[to - from];
+		for (int i = from; i < to; i++) {
+			chars[i - from] = (char) (buffer.get(i) & 0xff);
+		}
+		return new String(chars);
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //all the symbols in the table, in no particular order
+	 * @Date 13:09 2026/10/18
+	 * @Param []
+	 * @return java.lang.String[]
+	 **/
+	public String[] getSymbols() {
+		String[] symbols = new String[this.size];
+		int n = 0;
+		for (String key : this.keys) {
+			if (key != null) {
+				symbols[n++] = key;
+			}
+		}
+		return symbols;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the labels in the table, the predefined symbols and the variables are not
+	 * included
+	 * @Date 13:29 2026/10/18
+	 * @Param []
+	 * @return java.lang.String[]
+	 **/
+	public String[] getLabels() {
+		int count = 0;
+		for (int i = 0; i < this.keys.length; i++) {
+			if (this.keys[i] != null && this.labels[i]) {
+				count++;
+			}
+		}
+		String[] res = new String[count];
+		int n = 0;
+		for (int i = 0; i < this.keys.length; i++) {
+			if (this.keys[i] != null && this.labels[i]) {
+				res[n++] = this.keys[i];
+			}
+		}
+		return res;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //write the label map: one "address<TAB>label" per line, ordered by the
+	 * address, the labels at the same address by their names
+	 * @Date 13:29 2026/10/18
+	 * @Param [file]
+	 * @return void
+	 **/
+	public void writeLabels(File file) throws IOException {
+		String[] labels = getLabels();
+		Arrays.sort(labels, (x, y) -> getAddress(x) != getAddress(y) ?
+				Integer.compare(getAddress(x), getAddress(y)) : x.compareTo(y));
+		try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+			for (String label : labels) {
+				writer.print(getAddress(label));
+				writer.print('\t');
+				writer.print(label);
+				writer.print('\n');
+			}
 		}
-		return -1;
 	}
 }
@@ -0,0 +1,346 @@
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:50
+ *
+ * Prints the table of the Hack instructions written for every arithmetic command and some push
+ * and pop commands: by the code through R13 and R14, by the in place code, by a call of the
+ * shared comparison routine and with the top of the stack cached in D. A command is measured
+ * between pushes, so the cached top is in D before and after it, and a push counts the spill of
+ * the value before it. Everything between the labels runs once, so the instructions are the
+ * cycles of the command, a comparison runs fewer when it is true. A shared routine is written
+ * once per program and its instructions are not in the table.
+ * It is a check as well: a count which is not the expected one fails, and every command is run
+ * in every column and with -O on some operands, the stack, the segments and the pointers must be
+ * the same as with the code through R13 and R14. It exits with 1 when a check fails.
+ */
+public class CodeSize {
+	private static final Command[] ARITHMETIC = {Command.ADD, Command.SUB, Command.NEG,
+			Command.EQ, Command.GT, Command.LT, Command.AND, Command.OR, Command.NOT};
+	private static final Segment[] SEGMENTS = {Segment.CONST, Segment.LOCAL, Segment.STATIC};
+	//the columns of the table
+	private static final String[] MODES = {"registers", "in place", "shared", "cached"};
+	//the rows of the table in the order they are printed, the counts of every column
+	private static final int[][] EXPECTED = {
+			{21, 5, 5, 3}, {21, 5, 5, 3}, {11, 3, 3, 1},
+			{30, 11, 4, 9}, {30, 11, 4, 9}, {30, 11, 4, 9},
+			{21, 5, 5, 3}, {21, 5, 5, 3}, {10, 3, 3, 1},
+			{7, 7, 7, 6}, {10, 10, 10, 9}, {13, 13, 13, 5}, {7, 7, 7, 6}, {6, 6, 6, 2}};
+	//the two values pushed before the command, the comparisons see them equal, below and above
+	private static final int[][] OPERANDS = {{1, 2}, {2, 1}, {7, 7}, {0, 32767}, {32767, 0}};
+	//the run starts with SP at STACK and LCL at LOCALS, every local is LOCAL_VALUE
+	private static final int STACK = 256;
+	private static final int LOCALS = 300;
+	private static final int LOCAL_VALUE = 11;
+	//the CodeWriter of every column, and of -O last
+	private static final List<Consumer<CodeWriter>> SETUPS = List.of(
+			codeWriter -> {
+			},
+			codeWriter -> codeWriter.setInPlace(true),
+			//only the comparisons have a shared routine
+			codeWriter -> {
+				codeWriter.setInPlace(true);
+				codeWriter.setCompareInlineDepth(Integer.MAX_VALUE);
+			},
+			codeWriter -> codeWriter.setCacheTop(true),
+			codeWriter -> codeWriter.setOptimize(true));
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the number of instructions written for the command between two pushes and
+	 * a push, without the shared routines
+	 * @Date 13:50 2026/10/18
+	 * @Param [command, segment, index, setup]
+	 * @return int
+	 **/
+	public static int instructions(Command command, Segment segment, int index,
+			Consumer<CodeWriter> setup) throws IOException {
+		CommandStream stream = stream(command, segment, index, 1, 2);
+		String asm = translate(stream, setup);
+		int start = asm.indexOf("//vm command:" + stream.toString(2));
+		int end = asm.indexOf("//vm command:", start + 1);
+		return count(asm.substring(start, end));
+	}
+
+	//push x, push y, the command and push 3
+	private static CommandStream stream(Command command, Segment segment, int index, int x,
+			int y) {
+		CommandStream stream = new CommandStream("CodeSize");
+		stream.add(Command.PUSH, Segment.CONST, x, -1, 1);
+		stream.add(Command.PUSH, Segment.CONST, y, -1, 2);
+		stream.add(command, segment, index, -1, 3);
+		stream.add(Command.PUSH, Segment.CONST, 3, -1, 4);
+		return stream;
+	}
+
+	private static String translate(CommandStream stream, Consumer<CodeWriter> setup)
+			throws IOException {
+		StringWriter out = new StringWriter();
+		CodeWriter codeWriter = new CodeWriter(out);
+		setup.accept(codeWriter);
+		codeWriter.write(stream);
+		codeWriter.close();
+		return out.toString();
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //run the command on every operand with every CodeWriter, and compare the
+	 * memory the program can see with the one of the code through R13 and R14. Prints the
+	 * differences and returns their number.
+	 * @Date 14:38 2026/10/18
+	 * @Param [name, command, segment, index]
+	 * @return int
+	 **/
+	private static int checkBehaviour(String name, Command command, Segment segment, int index)
+			throws IOException {
+		int failures = 0;
+		for (int[] operands : OPERANDS) {
+			CommandStream stream = stream(command, segment, index, operands[0], operands[1]);
+			int[] expected = run(translate(stream, SETUPS.get(0)));
+			for (int k = 1; k < SETUPS.size(); k++) {
+				int[] ram = run(translate(stream, SETUPS.get(k)));
+				int address = difference(ram, expected);
+				if (address >= 0) {
+					System.out.println("FAIL " + name + " " + operands[0] + " " + operands[1]
+							+ ": " + (k < MODES.length ? MODES[k] : "-O") + " leaves RAM["
+							+ address + "] = " + ram[address] + ", registers leave "
+							+ expected[address]);
+					failures++;
+				}
+			}
+		}
+		return failures;
+	}
+
+	//the first address the program can see where the RAMs differ: the pointers, the statics,
+	// the stack below SP and the locals. -1 if there is none.
+	private static int difference(int[] ram, int[] expected) {
+		int end = Math.max(ram[0], expected[0]);
+		for (int address = 0; address < LOCALS + 10; address++) {
+			boolean visible = address < 5 || address >= 16 && address < end
+					|| address >= LOCALS;
+			if (visible && ram[address] != expected[address]) {
+				return address;
+			}
+		}
+		return -1;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //run the code from the first instruction until it runs off the end or into
+	 * VM.halt, with the stack at STACK and the locals at LOCALS. The variables get addresses
+	 * from 16 like the assembler gives them.
+	 * @Date 14:38 2026/10/18
+	 * @Param [asm]
+	 * @return int[] the RAM after the run
+	 **/
+	private static int[] run(String asm) {
+		String[] code = new String[count(asm)];
+		HashMap<String, Integer> symbols = new HashMap<>();
+		String[] pointers = {"SP", "LCL", "ARG", "THIS", "THAT"};
+		for (int i = 0; i < pointers.length; i++) {
+			symbols.put(pointers[i], i);
+		}
+		for (int i = 0; i < 16; i++) {
+			symbols.put("R" + i, i);
+		}
+		int size = 0;
+		for (String line : asm.split("\r\n")) {
+			line = line.trim();
+			if (line.startsWith("(")) {
+				symbols.put(line.substring(1, line.length() - 1), size);
+			} else if (!line.isEmpty() && !line.startsWith("//")) {
+				code[size++] = line;
+			}
+		}
+		int[] ram = new int[32768];
+		ram[0] = STACK;
+		ram[1] = LOCALS;
+		Arrays.fill(ram, LOCALS, LOCALS + 10, LOCAL_VALUE);
+		int variable = 16;
+		Integer halt = symbols.get("VM.halt");
+		int a = 0;
+		int d = 0;
+		int pc = 0;
+		for (int cycles = 0; pc < size && (halt == null || pc != halt); cycles++) {
+			if (cycles > 10000) {
+				throw new IllegalStateException("the code of CodeSize doesn't stop");
+			}
+			String op = code[pc++];
+			if (op.startsWith("@")) {
+				String symbol = op.substring(1);
+				if (Character.isDigit(symbol.charAt(0))) {
+					a = Integer.parseInt(symbol);
+				} else {
+					Integer address = symbols.get(symbol);
+					if (address == null) {
+						address = variable++;
+						symbols.put(symbol, address);
+					}
+					a = address;
+				}
+				continue;
+			}
+			int equals = op.indexOf('=');
+			int semicolon = op.indexOf(';');
+			String dest = equals < 0 ? "" : op.substring(0, equals);
+			String jump = semicolon < 0 ? "" : op.substring(semicolon + 1);
+			int value = (short) comp(op.substring(equals + 1, semicolon < 0 ? op.length()
+					: semicolon), a, d, ram[a & 0x7FFF]);
+			//the jump goes to the old A
+			int target = a;
+			if (dest.contains("M")) {
+				ram[a & 0x7FFF] = value;
+			}
+			if (dest.contains("D")) {
+				d = value;
+			}
+			if (dest.contains("A")) {
+				a = value;
+			}
+			if (jumps(jump, value)) {
+				pc = target;
+			}
+		}
+		return ram;
+	}
+
+	//the comps the CodeWriter writes: a value, !x, -x and x op y
+	private static int comp(String comp, int a, int d, int m) {
+		if (comp.length() == 1) {
+			return operand(comp.charAt(0), a, d, m);
+		}
+		if (comp.length() == 2) {
+			int x = operand(comp.charAt(1), a, d, m);
+			return comp.charAt(0) == '!' ? ~x : -x;
+		}
+		int x = operand(comp.charAt(0), a, d, m);
+		int y = operand(comp.charAt(2), a, d, m);
+		switch (comp.charAt(1)) {
+			case '+':
+				return x + y;
+			case '-':
+				return x - y;
+			case '&':
+				return x & y;
+			case '|':
+				return x | y;
+			default:
+				throw new IllegalArgumentException("unknown comp " + comp);
+		}
+	}
+
+	private static int operand(char c, int a, int d, int m) {
+		switch (c) {
+			case 'A':
+				return a;
+			case 'D':
+				return d;
+			case 'M':
+				return m;
+			case '0':
+				return 0;
+			case '1':
+				return 1;
+			default:
+				throw new IllegalArgumentException("unknown operand " + c);
+		}
+	}
+
+	private static boolean jumps(String jump, int value) {
+		switch (jump) {
+			case "":
+				return false;
+			case "JGT":
+				return value > 0;
+			case "JEQ":
+				return value == 0;
+			case "JGE":
+				return value >= 0;
+			case "JLT":
+				return value < 0;
+			case "JNE":
+				return value != 0;
+			case "JLE":
+				return value <= 0;
+			default:
+				return true;
+		}
+	}
+
+	//the lines which are not empty, a comment or a label
+	public static int count(String asm) {
+		int count = 0;
+		for (String line : asm.split("\r\n")) {
+			line = line.trim();
+			if (!line.isEmpty() && !line.startsWith("//") && !line.startsWith("(")) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //print one row of the table, the totals are added up in totals. The counts
+	 * are compared with the row of EXPECTED, a count which is not the expected one is marked
+	 * with '!'. Returns the number of the failed checks of the row.
+	 * @Date 14:38 2026/10/18
+	 * @Param [row, name, command, segment, index, totals]
+	 * @return int
+	 **/
+	private static int row(int row, String name, Command command, Segment segment, int index,
+			int[] totals) throws IOException {
+		StringBuilder line = new StringBuilder(String.format("%-14s", name));
+		int failures = 0;
+		for (int k = 0; k < MODES.length; k++) {
+			int count = instructions(command, segment, index, SETUPS.get(k));
+			totals[k] += count;
+			line.append(String.format(" %10d", count));
+			if (count != EXPECTED[row][k]) {
+				line.append('!');
+				failures++;
+			}
+		}
+		System.out.println(line);
+		if (failures > 0) {
+			System.out.println("FAIL " + name + " expected " + Arrays.toString(EXPECTED[row]));
+		}
+		return failures + checkBehaviour(name, command, segment, index);
+	}
+
+	public static void main(String[] args) throws IOException {
+		System.out.printf("%-14s %10s %10s %10s %10s%n", "command", MODES[0], MODES[1], MODES[2],
+				MODES[3]);
+		int[] totals = new int[MODES.length];
+		int row = 0;
+		int failures = 0;
+		for (Command command : ARITHMETIC) {
+			failures += row(row++, command.getKeyword(), command, Segment.NONE, 0, totals);
+		}
+		for (Segment segment : SEGMENTS) {
+			failures += row(row++, "push " + segment.getKeyword(), Command.PUSH, segment, 2,
+					totals);
+			if (segment != Segment.CONST) {
+				failures += row(row++, "pop " + segment.getKeyword(), Command.POP, segment, 2,
+						totals);
+			}
+		}
+		System.out.printf("%-14s %10d %10d %10d %10d%n", "total", totals[0], totals[1], totals[2],
+				totals[3]);
+		if (failures > 0) {
+			System.out.println(failures + " checks failed");
+			System.exit(1);
+		}
+		System.out.println("the counts are the expected ones, all the columns and -O compute the "
+				+ "same");
+	}
+}
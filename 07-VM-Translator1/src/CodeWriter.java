@@ -1,27 +1,101 @@
 import java.io.*;
+import java.util.BitSet;
 
 /**
  * @Author HuangChuan
  * @Create in 2021/12/09 20:52
  */
-public class CodeWriter {
+public final class CodeWriter {
 	//the source file
 	private File file;
 	private File outputFile;
 	BufferedWriter bufferedWriter;
 	//this variable is used to distinguish the L-Command
 	private int i = 0;
+	//the labels of the translator are "function$$kind.N". A vm name has no '$', so the labels of
+	// the vm code, "function$label", never look like them.
+	//the function being written, the labels inside it are "function$label"; the file name before
+	// the first function of a file
+	private String currentFunction;
+	//the return addresses in the current function are "function$$ret.N"
+	private int returnCount;
+	//the shared routines to write at the end: the call entries by the number of arguments
+	private BitSet callEntries = new BitSet();
+	private boolean returnUsed;
+	//the arithmetic commands work on the top of the stack in place instead of through R13 and R14
+	private boolean inPlace;
+	//a comparison nested in fewer loops than this calls the shared routine of its command, 0
+	// writes every comparison inline
+	private int compareInlineDepth;
+	//push, pop and arithmetic keep the top of the stack in D, cached tells if it is there now.
+	// The RAM stack and SP are below the cached value, it is spilled before a label or a jump.
+	private boolean cacheTop;
+	private boolean cached;
+	//the shared comparison routines to write at the end, by the ordinal of the command
+	private BitSet compareRoutines = new BitSet();
+	//the loop depth of every command of loopStream
+	private CommandStream loopStream;
+	private int[] loopDepths;
 
 	public BufferedWriter getBufferedWriter() {
 		return bufferedWriter;
 	}
 
+	/*
+	 * @Author HuangChuan
+	 * @Description //the output of "Foo.vm" is "Foo.asm" beside it, the output of the directory
+	 * "Foo" is "Foo/Foo.asm"
+	 * @Date 20:52 2021/12/9
+	 * @Param [file]
+	 * @return
+	 **/
 	public CodeWriter(File file) throws FileNotFoundException {
 		this.file = file;
 		setFileName(file.getPath());
 		this.bufferedWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFile)));
 	}
 
+	//write the code to writer instead of a file, to measure it
+	public CodeWriter(Writer writer) {
+		this.bufferedWriter = new BufferedWriter(writer);
+	}
+
+	public boolean isInPlace() {
+		return inPlace;
+	}
+
+	public void setInPlace(boolean inPlace) {
+		this.inPlace = inPlace;
+	}
+
+	public boolean isCacheTop() {
+		return cacheTop;
+	}
+
+	public void setCacheTop(boolean cacheTop) {
+		this.cacheTop = cacheTop;
+	}
+
+	public int getCompareInlineDepth() {
+		return compareInlineDepth;
+	}
+
+	public void setCompareInlineDepth(int compareInlineDepth) {
+		this.compareInlineDepth = compareInlineDepth;
+	}
+
+	//the optimizations of VMTranslator -O: the top of the stack in D, and the comparisons
+	// outside the loops call the shared routines
+	public void setOptimize(boolean optimize) {
+		setInPlace(optimize);
+		setCacheTop(optimize);
+		setCompareInlineDepth(optimize ? 1 : 0);
+	}
+
+	public File getOutputFile() {
+		return outputFile;
+	}
+
 	/*
 	 * @Author HuangChuan
 	 * @Description //get the output file path by input file path
@@ -30,8 +104,12 @@ public class CodeWriter {
 	 * @return void
 	 **/
 	public void setFileName(String fileName) {
-		String outputFilePath = fileName.substring(0, fileName.lastIndexOf("\\")) + "\\" + fileName.substring(fileName.lastIndexOf("\\") + 1, fileName.indexOf(".")) + ".asm";
-		this.outputFile = new File(outputFilePath);
+		File file = new File(fileName).getAbsoluteFile();
+		if (file.isDirectory()) {
+			this.outputFile = new File(file, file.getName() + ".asm");
+		} else {
+			this.outputFile = new File(file.getParentFile(), VMParser.baseName(file) + ".asm");
+		}
 	}
 
 	/*
@@ -73,13 +151,18 @@ public class CodeWriter {
 	 * @Param [arg1: which segment, arg2: the offset]
 	 * @return void
 	 **/
-	private void pushByArg(String arg1, String arg2) throws IOException {
+	private void pushByArg(String arg1, int arg2) throws IOException {
+		pushByArgAddress(arg1, arg2);
+		push("D");
+	}
+
+	//the value at the address in arg1 + arg2 into D
+	private void pushByArgAddress(String arg1, int arg2) throws IOException {
 		this.bufferedWriter.write("@" + arg1 + "\r\n"
 				+ "D=M\r\n"
 				+ "@" + arg2 + "\r\n"
-				+ "A=A+D\r\n"
+				+ "A=D+A\r\n"
 				+ "D=M\r\n");
-		push("D");
 	}
 
 	/*
@@ -168,28 +251,37 @@ public class CodeWriter {
 	 * @Author HuangChuan
 	 * @Description //the repeating code of writeArithmetic() method
 	 * @Date 16:24 2021/12/11
-	 * @Param [parser, type]
+	 * @Param [stream, index, type]
 	 * @return void
 	 **/
-	private void switchEQ(Parser parser, String type) throws IOException {
-		this.bufferedWriter.write("//vm command:" + parser.getCurrentCommand() + "\r\n");
+	private void switchEQ(CommandStream stream, int index, String type) throws IOException {
+		comment(stream, index);
 		getTwoTopElemAndStoreInReg();
 		R13MinusR14();
-		this.bufferedWriter.write("@" + type + i + "\r\n"
+		//the labels are inside the function, like the labels of the vm code
+		String label = internalLabel(stream, type);
+		this.bufferedWriter.write("@" + label + "\r\n"
 				+ "D;J" + type + "\r\n");
 		push("0");
-		this.bufferedWriter.write("@END" + type + i + "\r\n"
+		this.bufferedWriter.write("@" + label + ".end\r\n"
 				+ "0;JMP\r\n"
-				+ "(" + type + i + ")\r\n");
-		//1 represents true, 0 represents false
-		push("1");
-		this.bufferedWriter.write("(END" + type + i + ")\r\n");
-		i++;
+				+ "(" + label + ")\r\n");
+		//-1 represents true, 0 represents false
+		push("-1");
+		this.bufferedWriter.write("(" + label + ".end)\r\n");
 		this.bufferedWriter.write("\r\n");
 	}
 
-	private void switchAndOrNot(Parser parser, String type) throws IOException {
-		this.bufferedWriter.write("//vm command:" + parser.getCurrentCommand() + "\r\n");
+	private void switchAndOrNot(CommandStream stream, int index, String type)
+			throws IOException {
+		comment(stream, index);
+		if (type.equals("!")) {
+			pop();
+			this.bufferedWriter.write("D=!D\r\n");
+			push("D");
+			this.bufferedWriter.write("\r\n");
+			return;
+		}
 		getTwoTopElemAndStoreInReg();
 		getValueOfR13();
 		this.bufferedWriter.write("@R14\r\n"
@@ -206,43 +298,66 @@ public class CodeWriter {
 	 * @return void
 	 **/
 	public void writeArithmetic(Parser parser) throws IOException {
-		//get the command type
-		String type = parser.arg1();
-		switch (type) {
-			case "add":
-				this.bufferedWriter.write("//vm command:" + parser.getCurrentCommand() + "\r\n");
+		writeArithmetic(parser.getStream(), parser.getIndex());
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //write the arithmetic command at index of the stream
+	 * @Date 13:43 2026/10/18
+	 * @Param [stream, index]
+	 * @return void
+	 **/
+	public void writeArithmetic(CommandStream stream, int index) throws IOException {
+		Command command = stream.command(index);
+		if ((command == Command.EQ || command == Command.GT || command == Command.LT)
+				&& loopDepth(stream, index) < this.compareInlineDepth) {
+			writeSharedCompare(stream, index);
+			return;
+		}
+		if (this.cacheTop) {
+			writeCachedArithmetic(stream, index);
+			return;
+		}
+		if (this.inPlace) {
+			writeInPlace(stream, index);
+			return;
+		}
+		switch (stream.command(index)) {
+			case ADD:
+				comment(stream, index);
 				getTwoTopElemAndStoreInReg();
 				R13AddR14();
 				push("D");
 				this.bufferedWriter.write("\r\n");
 				break;
-			case "sub":
-				this.bufferedWriter.write("//vm command:" + parser.getCurrentCommand() + "\r\n");
+			case SUB:
+				comment(stream, index);
 				getTwoTopElemAndStoreInReg();
 				R13MinusR14();
 				push("D");
 				this.bufferedWriter.write("\r\n");
 				break;
-			case "eq":
-				switchEQ(parser, "EQ");
+			case EQ:
+				switchEQ(stream, index, "EQ");
 				break;
-			case "gt":
-				switchEQ(parser, "GT");
+			case GT:
+				switchEQ(stream, index, "GT");
 				break;
-			case "lt":
-				switchEQ(parser, "LT");
+			case LT:
+				switchEQ(stream, index, "LT");
 				break;
-			case "and":
-				switchAndOrNot(parser, "&");
+			case AND:
+				switchAndOrNot(stream, index, "&");
 				break;
-			case "or":
-				switchAndOrNot(parser, "|");
+			case OR:
+				switchAndOrNot(stream, index, "|");
 				break;
-			case "not":
-				switchAndOrNot(parser, "!");
+			case NOT:
+				switchAndOrNot(stream, index, "!");
 				break;
-			case "neg":
-				this.bufferedWriter.write("//vm command:" + parser.getCurrentCommand() + "\r\n");
+			case NEG:
+				comment(stream, index);
 				pop();
 				this.bufferedWriter.write("@0\r\n"
 						+ "D=A-D\r\n");
@@ -254,6 +369,277 @@ public class CodeWriter {
 		}
 	}
 
+	/*
+	 * @Author HuangChuan
+	 * @Description //the arithmetic command computed on the stack: a binary command pops y into D
+	 * and writes the result over x, a unary command rewrites the top. A comparison writes true
+	 * first and false only when the jump is not taken.
+	 * @Date 13:50 2026/10/18
+	 * @Param [stream, index]
+	 * @return void
+	 **/
+	private void writeInPlace(CommandStream stream, int index) throws IOException {
+		comment(stream, index);
+		Command command = stream.command(index);
+		switch (command) {
+			case NEG:
+			case NOT:
+				this.bufferedWriter.write("@SP\r\n"
+						+ "A=M-1\r\n"
+						+ "M=" + (command == Command.NEG ? "-M" : "!M") + "\r\n");
+				break;
+			case EQ:
+			case GT:
+			case LT:
+				String type = command.name();
+				String label = internalLabel(stream, type);
+				this.bufferedWriter.write("@SP\r\n"
+						+ "AM=M-1\r\n"
+						+ "D=M\r\n"
+						+ "A=A-1\r\n"
+						+ "D=M-D\r\n"
+						+ "M=-1\r\n"
+						+ "@" + label + "\r\n"
+						+ "D;J" + type + "\r\n"
+						+ "@SP\r\n"
+						+ "A=M-1\r\n"
+						+ "M=0\r\n"
+						+ "(" + label + ")\r\n");
+				break;
+			default:
+				this.bufferedWriter.write("@SP\r\n"
+						+ "AM=M-1\r\n"
+						+ "D=M\r\n"
+						+ "A=A-1\r\n"
+						+ "M=" + inPlaceComp(command) + "\r\n");
+				break;
+		}
+		this.bufferedWriter.write("\r\n");
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //a comparison which calls the shared routine of its command with the return
+	 * address in D
+	 * @Date 13:51 2026/10/18
+	 * @Param [stream, index]
+	 * @return void
+	 **/
+	private void writeSharedCompare(CommandStream stream, int index) throws IOException {
+		comment(stream, index);
+		spill();
+		Command command = stream.command(index);
+		String returnAddress = internalLabel(stream, command.getKeyword());
+		this.compareRoutines.set(command.ordinal());
+		this.bufferedWriter.write("@" + returnAddress + "\r\n"
+				+ "D=A\r\n"
+				+ "@VM." + command.getKeyword() + "\r\n"
+				+ "0;JMP\r\n"
+				+ "(" + returnAddress + ")\r\n"
+				+ "\r\n");
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the number of loops around the command: a loop is a label and a goto or
+	 * if-goto after it back to it in the same function
+	 * @Date 13:51 2026/10/18
+	 * @Param [stream, index]
+	 * @return int
+	 **/
+	private int loopDepth(CommandStream stream, int index) {
+		if (this.compareInlineDepth == 0) {
+			return 0;
+		}
+		if (stream != this.loopStream) {
+			this.loopStream = stream;
+			//the label of every name in the current function, and its depth changes
+			int[] labels = new int[stream.nameCount()];
+			int[] changes = new int[stream.size() + 1];
+			int functionStart = 0;
+			for (int k = 0; k < stream.size(); k++) {
+				switch (stream.command(k)) {
+					case FUNCTION:
+						functionStart = k;
+						break;
+					case LABEL:
+						labels[stream.nameId(k)] = k + 1;
+						break;
+					case GOTO:
+					case IF_GOTO:
+						int label = labels[stream.nameId(k)] - 1;
+						if (label >= functionStart) {
+							changes[label]++;
+							changes[k + 1]--;
+						}
+						break;
+					default:
+						break;
+				}
+			}
+			this.loopDepths = new int[stream.size()];
+			int depth = 0;
+			for (int k = 0; k < stream.size(); k++) {
+				depth += changes[k];
+				this.loopDepths[k] = depth;
+			}
+		}
+		return this.loopDepths[index];
+	}
+
+	//write the cached top of the stack to RAM
+	private void spill() throws IOException {
+		if (this.cached) {
+			this.bufferedWriter.write("//spill the top of stack\r\n"
+					+ "@SP\r\n"
+					+ "AM=M+1\r\n"
+					+ "A=A-1\r\n"
+					+ "M=D\r\n");
+			this.cached = false;
+		}
+	}
+
+	//pop the top of the stack into D, unless it is there
+	private void fill() throws IOException {
+		if (!this.cached) {
+			this.bufferedWriter.write("@SP\r\n"
+					+ "AM=M-1\r\n"
+					+ "D=M\r\n");
+			this.cached = true;
+		}
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the arithmetic command with the top of the stack in D: y is in D and x on
+	 * the RAM stack, the result stays in D
+	 * @Date 13:53 2026/10/18
+	 * @Param [stream, index]
+	 * @return void
+	 **/
+	private void writeCachedArithmetic(CommandStream stream, int index) throws IOException {
+		comment(stream, index);
+		fill();
+		Command command = stream.command(index);
+		switch (command) {
+			case NEG:
+				this.bufferedWriter.write("D=-D\r\n");
+				break;
+			case NOT:
+				this.bufferedWriter.write("D=!D\r\n");
+				break;
+			case EQ:
+			case GT:
+			case LT:
+				String type = command.name();
+				String label = internalLabel(stream, type);
+				this.bufferedWriter.write("@SP\r\n"
+						+ "AM=M-1\r\n"
+						+ "D=M-D\r\n"
+						+ "@" + label + "\r\n"
+						+ "D;J" + type + "\r\n"
+						+ "D=0\r\n"
+						+ "@" + label + ".end\r\n"
+						+ "0;JMP\r\n"
+						+ "(" + label + ")\r\n"
+						+ "D=-1\r\n"
+						+ "(" + label + ".end)\r\n");
+				break;
+			default:
+				this.bufferedWriter.write("@SP\r\n"
+						+ "AM=M-1\r\n"
+						+ "D=" + inPlaceComp(command) + "\r\n");
+				break;
+		}
+		this.bufferedWriter.write("\r\n");
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //push or pop with the top of the stack in D: push spills the top and loads
+	 * the value into D, pop stores D, so a value pushed and then used is never in RAM
+	 * @Date 13:53 2026/10/18
+	 * @Param [stream, index]
+	 * @return void
+	 **/
+	private void writeCachedPushPop(CommandStream stream, int index) throws IOException {
+		Segment segment = stream.segment(index);
+		int arg2 = stream.index(index);
+		//the address of static, pointer and temp is known, the others are at the base + arg2
+		String address = null;
+		switch (segment) {
+			case STATIC:
+				address = stream.getFileName() + "." + arg2;
+				break;
+			case POINTER:
+				address = String.valueOf(3 + arg2);
+				break;
+			case TEMP:
+				address = String.valueOf(5 + arg2);
+				break;
+			default:
+				break;
+		}
+		String base = segment == Segment.LOCAL ? "LCL" : segment.name();
+		if (stream.command(index) == Command.PUSH) {
+			comment(stream, index);
+			spill();
+			if (segment == Segment.CONST) {
+				this.bufferedWriter.write("@" + arg2 + "\r\n"
+						+ "D=A\r\n");
+			} else if (address != null) {
+				this.bufferedWriter.write("@" + address + "\r\n"
+						+ "D=M\r\n");
+			} else {
+				pushByArgAddress(base, arg2);
+			}
+			this.cached = true;
+		} else if (segment != Segment.CONST) {
+			comment(stream, index);
+			fill();
+			if (address != null) {
+				this.bufferedWriter.write("@" + address + "\r\n"
+						+ "M=D\r\n");
+			} else if (arg2 < 8) {
+				//step A to the address, D is kept
+				this.bufferedWriter.write("@" + base + "\r\n"
+						+ "A=M\r\n");
+				for (int k = 0; k < arg2; k++) {
+					this.bufferedWriter.write("A=A+1\r\n");
+				}
+				this.bufferedWriter.write("M=D\r\n");
+			} else {
+				storeInReg("R13");
+				this.bufferedWriter.write("@" + base + "\r\n"
+						+ "D=M\r\n"
+						+ "@" + arg2 + "\r\n"
+						+ "D=D+A\r\n");
+				storeInReg("R14");
+				this.bufferedWriter.write("@R13\r\n"
+						+ "D=M\r\n"
+						+ "@R14\r\n"
+						+ "A=M\r\n"
+						+ "M=D\r\n");
+			}
+			this.cached = false;
+		}
+		this.bufferedWriter.write("\r\n");
+	}
+
+	//the comp of a binary command with y in D and x in M
+	private static String inPlaceComp(Command command) {
+		switch (command) {
+			case ADD:
+				return "D+M";
+			case SUB:
+				return "M-D";
+			case AND:
+				return "D&M";
+			default:
+				return "D|M";
+		}
+	}
+
 	/*
 	 * @Author HuangChuan
 	 * @Description //write pop and push command
@@ -262,62 +648,75 @@ public class CodeWriter {
 	 * @return void
 	 **/
 	public void writePushPop(Parser parser) throws IOException {
-		CommandType commandType = parser.getCommandType();
+		writePushPop(parser.getStream(), parser.getIndex());
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //write the push or pop command at index of the stream
+	 * @Date 13:43 2026/10/18
+	 * @Param [stream, index]
+	 * @return void
+	 **/
+	public void writePushPop(CommandStream stream, int index) throws IOException {
+		if (this.cacheTop) {
+			writeCachedPushPop(stream, index);
+			return;
+		}
+		CommandType commandType = stream.command(index).getType();
 		if (commandType.equals(CommandType.C_PUSH)) {
-			String arg1 = parser.arg1();
-			String arg2 = parser.arg2();
-			switch (arg1) {
-				case "argument":
-					this.bufferedWriter.write("//vm command:" + parser.getCurrentCommand() + "\r\n");
+			int arg2 = stream.index(index);
+			switch (stream.segment(index)) {
+				case ARG:
+					comment(stream, index);
 					pushByArg("ARG", arg2);
 					this.bufferedWriter.write("\r\n");
 					break;
-				case "local":
-					this.bufferedWriter.write("//vm command:" + parser.getCurrentCommand() + "\r\n");
+				case LOCAL:
+					comment(stream, index);
 					pushByArg("LCL", arg2);
 					this.bufferedWriter.write("\r\n");
 					break;
-				case "static":
-					this.bufferedWriter.write("//vm command:" + parser.getCurrentCommand() + "\r\n");
-					this.bufferedWriter.write("@" + this.file.getName().substring(0,
-							this.file.getName().indexOf(".") + 1) + arg2 + "\r\n"
+				case STATIC:
+					comment(stream, index);
+					this.bufferedWriter.write("@" + stream.getFileName() + "." + arg2 + "\r\n"
 							+ "D=M\r\n");
 					push("D");
 					this.bufferedWriter.write("\r\n");
 					break;
-				case "constant":
-					this.bufferedWriter.write("//vm command:" + parser.getCurrentCommand() + "\r\n");
+				case CONST:
+					comment(stream, index);
 					this.bufferedWriter.write("@" + arg2 + "\r\n"
 							+ "D=A\r\n");
 					push("D");
 					this.bufferedWriter.write("\r\n");
 					break;
-				case "this":
-					this.bufferedWriter.write("//vm command:" + parser.getCurrentCommand() + "\r\n");
+				case THIS:
+					comment(stream, index);
 					pushByArg("THIS", arg2);
 					this.bufferedWriter.write("\r\n");
 					break;
-				case "that":
-					this.bufferedWriter.write("//vm command:" + parser.getCurrentCommand() + "\r\n");
+				case THAT:
+					comment(stream, index);
 					pushByArg("THAT", arg2);
 					this.bufferedWriter.write("\r\n");
 					break;
-				case "pointer":
-					this.bufferedWriter.write("//vm command:" + parser.getCurrentCommand() + "\r\n");
+				case POINTER:
+					comment(stream, index);
 					this.bufferedWriter.write("@THIS\r\n"
 							+ "D=A\r\n"
 							+ "@" + arg2 + "\r\n"
-							+ "A=A+D\r\n"
+							+ "A=D+A\r\n"
 							+ "D=M\r\n");
 					push("D");
 					this.bufferedWriter.write("\r\n");
 					break;
-				case "temp":
-					this.bufferedWriter.write("//vm command:" + parser.getCurrentCommand() + "\r\n");
+				case TEMP:
+					comment(stream, index);
 					this.bufferedWriter.write("@5\r\n"
 							+ "D=A\r\n"
 							+ "@" + arg2 + "\r\n"
-							+ "A=A+D\r\n"
+							+ "A=D+A\r\n"
 							+ "D=M\r\n");
 					push("D");
 					this.bufferedWriter.write("\r\n");
@@ -326,11 +725,10 @@ public class CodeWriter {
 					break;
 			}
 		} else if (commandType.equals(CommandType.C_POP)) {
-			String arg1 = parser.arg1();
-			String arg2 = parser.arg2();
-			switch (arg1) {
-				case "argument":
-					this.bufferedWriter.write("//vm command:" + parser.getCurrentCommand() + "\r\n");
+			int arg2 = stream.index(index);
+			switch (stream.segment(index)) {
+				case ARG:
+					comment(stream, index);
 					this.bufferedWriter.write("@ARG\r\n"
 							+ "D=M\r\n"
 							+ "@" + arg2 + "\r\n"
@@ -340,9 +738,10 @@ public class CodeWriter {
 					storeRegValueInMem();
 					this.bufferedWriter.write("\r\n");
 					break;
-				case "local":
-					this.bufferedWriter.write("//vm command:" + parser.getCurrentCommand() + "\r\n");
+				case LOCAL:
+					comment(stream, index);
 					this.bufferedWriter.write("@LCL\r\n"
+							+ "D=M\r\n"
 							+ "@" + arg2 + "\r\n"
 							+ "D=D+A\r\n");
 					storeInReg("R13");
@@ -350,19 +749,18 @@ public class CodeWriter {
 					storeRegValueInMem();
 					this.bufferedWriter.write("\r\n");
 					break;
-				case "static":
-					this.bufferedWriter.write("//vm command:" + parser.getCurrentCommand() + "\r\n");
+				case STATIC:
+					comment(stream, index);
 					pop();
-					this.bufferedWriter.write("@" + this.file.getName().substring(0,
-							this.file.getName().indexOf(".") + 1) + arg2 + "\r\n"
+					this.bufferedWriter.write("@" + stream.getFileName() + "." + arg2 + "\r\n"
 							+ "M=D\r\n");
 					this.bufferedWriter.write("\r\n");
 					break;
-				case "constant":
+				case CONST:
 					//pop constant is not exist
 					break;
-				case "this":
-					this.bufferedWriter.write("//vm command:" + parser.getCurrentCommand() + "\r\n");
+				case THIS:
+					comment(stream, index);
 					this.bufferedWriter.write("@THIS\r\n"
 							+ "D=M\r\n"
 							+ "@" + arg2 + "\r\n"
@@ -372,8 +770,8 @@ public class CodeWriter {
 					storeRegValueInMem();
 					this.bufferedWriter.write("\r\n");
 					break;
-				case "that":
-					this.bufferedWriter.write("//vm command:" + parser.getCurrentCommand() + "\r\n");
+				case THAT:
+					comment(stream, index);
 					this.bufferedWriter.write("@THAT\r\n"
 							+ "D=M\r\n"
 							+ "@" + arg2 + "\r\n"
@@ -383,8 +781,8 @@ public class CodeWriter {
 					storeRegValueInMem();
 					this.bufferedWriter.write("\r\n");
 					break;
-				case "pointer":
-					this.bufferedWriter.write("//vm command:" + parser.getCurrentCommand() + "\r\n");
+				case POINTER:
+					comment(stream, index);
 					this.bufferedWriter.write("@THIS\r\n"
 							+ "D=A\r\n"
 							+ "@" + arg2 + "\r\n"
@@ -394,8 +792,8 @@ public class CodeWriter {
 					storeRegValueInMem();
 					this.bufferedWriter.write("\r\n");
 					break;
-				case "temp":
-					this.bufferedWriter.write("//vm command:" + parser.getCurrentCommand() + "\r\n");
+				case TEMP:
+					comment(stream, index);
 					this.bufferedWriter.write("@5\r\n"
 							+ "D=A\r\n"
 							+ "@" + arg2 + "\r\n"
@@ -412,14 +810,311 @@ public class CodeWriter {
 			System.out.println("this command is not push or pop");
 		}
 	}
+	//the vm command as a comment before its code
+	private void comment(CommandStream stream, int index) throws IOException {
+		this.bufferedWriter.write("//vm command:" + stream.toString(index) + "\r\n");
+	}
+
+	//the function of the labels, or the file before the first function
+	private String scope(CommandStream stream) {
+		return this.currentFunction != null ? this.currentFunction : stream.getFileName();
+	}
+
+	//a new label of the translator in the scope, like "Main.f$$lt.3"
+	private String internalLabel(CommandStream stream, String kind) {
+		return scope(stream) + "$$" + kind.toLowerCase() + "." + i++;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the bootstrap code: SP = 256 and call Sys.init. It must be written first.
+	 * @Date 13:49 2026/10/18
+	 * @Param []
+	 * @return void
+	 **/
+	public void writeInit() throws IOException {
+		this.bufferedWriter.write("//bootstrap\r\n"
+				+ "@256\r\n"
+				+ "D=A\r\n"
+				+ "@SP\r\n"
+				+ "M=D\r\n");
+		this.currentFunction = "Bootstrap";
+		writeCall("Sys.init", 0);
+		this.currentFunction = null;
+	}
+
+	public void writeLabel(String label) throws IOException {
+		spill();
+		this.bufferedWriter.write("(" + this.currentFunction + "$" + label + ")\r\n");
+	}
+
+	public void writeGoto(String label) throws IOException {
+		spill();
+		this.bufferedWriter.write("@" + this.currentFunction + "$" + label + "\r\n"
+				+ "0;JMP\r\n");
+	}
+
+	//jump if the popped value is not false
+	public void writeIf(String label) throws IOException {
+		if (this.cached) {
+			//the value is in D already
+			this.cached = false;
+			this.bufferedWriter.write("@" + this.currentFunction + "$" + label + "\r\n"
+					+ "D;JNE\r\n");
+			return;
+		}
+		this.bufferedWriter.write("@SP\r\n"
+				+ "AM=M-1\r\n"
+				+ "D=M\r\n"
+				+ "@" + this.currentFunction + "$" + label + "\r\n"
+				+ "D;JNE\r\n");
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the entry of the function, and numLocals zeros pushed for the locals. The
+	 * zeros are written through A, SP is set once.
+	 * @Date 13:49 2026/10/18
+	 * @Param [functionName, numLocals]
+	 * @return void
+	 **/
+	public void writeFunction(String functionName, int numLocals) throws IOException {
+		spill();
+		this.currentFunction = functionName;
+		this.returnCount = 0;
+		this.bufferedWriter.write("(" + functionName + ")\r\n");
+		if (numLocals == 1) {
+			push("0");
+		} else if (numLocals > 1) {
+			this.bufferedWriter.write("@SP\r\n"
+					+ "A=M\r\n"
+					+ "M=0\r\n");
+			for (int k = 1; k < numLocals; k++) {
+				this.bufferedWriter.write("A=A+1\r\n"
+						+ "M=0\r\n");
+			}
+			this.bufferedWriter.write("D=A+1\r\n"
+					+ "@SP\r\n"
+					+ "M=D\r\n");
+		}
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //a call only passes the function in R13 and the return address in D to the
+	 * call entry of its number of arguments, which saves the frame and jumps to the function.
+	 * The return address is a label inside the calling function, so it is "caller$$ret.N".
+	 * @Date 13:49 2026/10/18
+	 * @Param [functionName, numArgs]
+	 * @return void
+	 **/
+	public void writeCall(String functionName, int numArgs) throws IOException {
+		spill();
+		String returnAddress = this.currentFunction + "$$ret." + this.returnCount++;
+		this.callEntries.set(numArgs);
+		this.bufferedWriter.write("@" + functionName + "\r\n"
+				+ "D=A\r\n"
+				+ "@R13\r\n"
+				+ "M=D\r\n"
+				+ "@" + returnAddress + "\r\n"
+				+ "D=A\r\n"
+				+ "@VM.call." + numArgs + "\r\n"
+				+ "0;JMP\r\n"
+				+ "(" + returnAddress + ")\r\n");
+	}
+
+	//every return jumps to the shared routine
+	public void writeReturn() throws IOException {
+		spill();
+		this.returnUsed = true;
+		this.bufferedWriter.write("@VM.return\r\n"
+				+ "0;JMP\r\n");
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //write the routines shared by the comparisons, the calls and the returns of
+	 * the program. A comparison routine is the in place comparison with a jump back to D.
+	 * A call entry pushes the return address in D and passes numArgs + 5 to VM.call, which
+	 * pushes LCL, ARG, THIS and THAT, sets ARG and LCL and jumps to the function in R13.
+	 * VM.return puts the return value at ARG, restores the frame and jumps back.
+	 * @Date 13:49 2026/10/18
+	 * @Param []
+	 * @return void
+	 **/
+	private void writeSharedRoutines() throws IOException {
+		if (this.callEntries.isEmpty() && !this.returnUsed && this.compareRoutines.isEmpty()) {
+			return;
+		}
+		//the code before the routines must not run into them
+		this.bufferedWriter.write("//the shared routines\r\n"
+				+ "(VM.halt)\r\n"
+				+ "@VM.halt\r\n"
+				+ "0;JMP\r\n");
+		//a comparison routine compares in place and goes back to the address in D
+		for (Command command : new Command[]{Command.EQ, Command.GT, Command.LT}) {
+			if (!this.compareRoutines.get(command.ordinal())) {
+				continue;
+			}
+			String routine = "VM." + command.getKeyword();
+			this.bufferedWriter.write("(" + routine + ")\r\n"
+					+ "@R15\r\n"
+					+ "M=D\r\n"
+					+ "@SP\r\n"
+					+ "AM=M-1\r\n"
+					+ "D=M\r\n"
+					+ "A=A-1\r\n"
+					+ "D=M-D\r\n"
+					+ "M=-1\r\n"
+					+ "@" + routine + "$TRUE\r\n"
+					+ "D;J" + command.name() + "\r\n"
+					+ "@SP\r\n"
+					+ "A=M-1\r\n"
+					+ "M=0\r\n"
+					+ "(" + routine + "$TRUE)\r\n"
+					+ "@R15\r\n"
+					+ "A=M\r\n"
+					+ "0;JMP\r\n");
+		}
+		BitSet entries = this.callEntries;
+		for (int n = entries.nextSetBit(0); n >= 0; n = entries.nextSetBit(n + 1)) {
+			this.bufferedWriter.write("(VM.call." + n + ")\r\n"
+					+ "@SP\r\n"
+					+ "AM=M+1\r\n"
+					+ "A=A-1\r\n"
+					+ "M=D\r\n"
+					+ "@" + (n + 5) + "\r\n"
+					+ "D=A\r\n"
+					+ "@VM.call\r\n"
+					+ "0;JMP\r\n");
+		}
+		if (!this.callEntries.isEmpty()) {
+			this.bufferedWriter.write("(VM.call)\r\n"
+					+ "@R14\r\n"
+					+ "M=D\r\n");
+			for (String pointer : new String[]{"LCL", "ARG", "THIS", "THAT"}) {
+				this.bufferedWriter.write("@" + pointer + "\r\n"
+						+ "D=M\r\n"
+						+ "@SP\r\n"
+						+ "AM=M+1\r\n"
+						+ "A=A-1\r\n"
+						+ "M=D\r\n");
+			}
+			this.bufferedWriter.write("@R14\r\n"
+					+ "D=M\r\n"
+					+ "@SP\r\n"
+					+ "D=M-D\r\n"
+					+ "@ARG\r\n"
+					+ "M=D\r\n"
+					+ "@SP\r\n"
+					+ "D=M\r\n"
+					+ "@LCL\r\n"
+					+ "M=D\r\n"
+					+ "@R13\r\n"
+					+ "A=M\r\n"
+					+ "0;JMP\r\n");
+		}
+		if (this.returnUsed) {
+			//R13 is the frame, R14 the return address, read before the return value may
+			// overwrite it when the function has no arguments
+			this.bufferedWriter.write("(VM.return)\r\n"
+					+ "@LCL\r\n"
+					+ "D=M\r\n"
+					+ "@R13\r\n"
+					+ "M=D\r\n"
+					+ "@5\r\n"
+					+ "A=D-A\r\n"
+					+ "D=M\r\n"
+					+ "@R14\r\n"
+					+ "M=D\r\n"
+					+ "@SP\r\n"
+					+ "AM=M-1\r\n"
+					+ "D=M\r\n"
+					+ "@ARG\r\n"
+					+ "A=M\r\n"
+					+ "M=D\r\n"
+					+ "@ARG\r\n"
+					+ "D=M+1\r\n"
+					+ "@SP\r\n"
+					+ "M=D\r\n");
+			for (String pointer : new String[]{"THAT", "THIS", "ARG", "LCL"}) {
+				this.bufferedWriter.write("@R13\r\n"
+						+ "AM=M-1\r\n"
+						+ "D=M\r\n"
+						+ "@" + pointer + "\r\n"
+						+ "M=D\r\n");
+			}
+			this.bufferedWriter.write("@R14\r\n"
+					+ "A=M\r\n"
+					+ "0;JMP\r\n");
+		}
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //write all the commands of the stream, the labels before the first function
+	 * belong to the file
+	 * @Date 13:43 2026/10/18
+	 * @Param [stream]
+	 * @return void
+	 **/
+	public void write(CommandStream stream) throws IOException {
+		this.currentFunction = stream.getFileName();
+		this.returnCount = 0;
+		for (int index = 0; index < stream.size(); index++) {
+			Command command = stream.command(index);
+			switch (command.getType()) {
+				case C_ARITHMETIC:
+					writeArithmetic(stream, index);
+					break;
+				case C_PUSH:
+				case C_POP:
+					writePushPop(stream, index);
+					break;
+				default:
+					comment(stream, index);
+					writeFlow(command, stream.name(index), stream.index(index));
+					this.bufferedWriter.write("\r\n");
+					break;
+			}
+		}
+		//the next file may start with a label
+		spill();
+	}
+
+	private void writeFlow(Command command, String name, int n) throws IOException {
+		switch (command) {
+			case LABEL:
+				writeLabel(name);
+				break;
+			case GOTO:
+				writeGoto(name);
+				break;
+			case IF_GOTO:
+				writeIf(name);
+				break;
+			case FUNCTION:
+				writeFunction(name, n);
+				break;
+			case CALL:
+				writeCall(name, n);
+				break;
+			default:
+				writeReturn();
+				break;
+		}
+	}
+
 	/*
 	 * @Author HuangChuan
-	 * @Description //close the output file stream
+	 * @Description //write the shared routines the program uses and close the output file stream
 	 * @Date 13:56 2021/12/12
 	 * @Param []
 	 * @return void
 	 **/
 	public void close() throws IOException {
+		spill();
+		writeSharedRoutines();
 		this.bufferedWriter.close();
 	}
 }
@@ -0,0 +1,43 @@
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:43
+ *
+ * The VM commands, the opcodes of a CommandStream. The first nine are the arithmetic commands,
+ * in the order of the Command of the JackCompiler.
+ */
+public enum Command {
+	ADD("add", CommandType.C_ARITHMETIC),
+	SUB("sub", CommandType.C_ARITHMETIC),
+	NEG("neg", CommandType.C_ARITHMETIC),
+	EQ("eq", CommandType.C_ARITHMETIC),
+	GT("gt", CommandType.C_ARITHMETIC),
+	LT("lt", CommandType.C_ARITHMETIC),
+	AND("and", CommandType.C_ARITHMETIC),
+	OR("or", CommandType.C_ARITHMETIC),
+	NOT("not", CommandType.C_ARITHMETIC),
+	PUSH("push", CommandType.C_PUSH),
+	POP("pop", CommandType.C_POP),
+	LABEL("label", CommandType.C_LABEL),
+	GOTO("goto", CommandType.C_GOTO),
+	IF_GOTO("if-goto", CommandType.C_IF),
+	FUNCTION("function", CommandType.C_FUNCTION),
+	CALL("call", CommandType.C_CALL),
+	RETURN("return", CommandType.C_RETURN);
+
+	//the word in the .vm file
+	private final String keyword;
+	private final CommandType type;
+
+	Command(String keyword, CommandType type) {
+		this.keyword = keyword;
+		this.type = type;
+	}
+
+	public String getKeyword() {
+		return keyword;
+	}
+
+	public CommandType getType() {
+		return type;
+	}
+}
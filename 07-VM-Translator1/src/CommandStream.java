@@ -0,0 +1,127 @@
+import java.util.Arrays;
+
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:43
+ *
+ * The commands of one .vm file as parallel arrays: the opcode, the segment and the int argument
+ * of every command, the name of the labels, functions and calls as an index into the names table,
+ * and the source line. A name is made into a String once however many commands use it.
+ */
+public class CommandStream {
+	private static final Command[] COMMANDS = Command.values();
+	private static final Segment[] SEGMENTS = Segment.values();
+
+	//the file name without ".vm", the prefix of the static variables
+	private String fileName;
+	private byte[] opcodes = new byte[256];
+	private byte[] segments = new byte[256];
+	//the index of push and pop, the locals of function and the arguments of call
+	private int[] indexes = new int[256];
+	//the index in names, -1 if the command has no name
+	private int[] nameIds = new int[256];
+	private int[] lines = new int[256];
+	private int size;
+	private String[] names = new String[16];
+	private int nameCount;
+
+	public CommandStream(String fileName) {
+		this.fileName = fileName;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //append a command, nameId is the index given by addName() or -1
+	 * @Date 13:43 2026/10/18
+	 * @Param [command, segment, index, nameId, line]
+	 * @return void
+	 **/
+	public void add(Command command, Segment segment, int index, int nameId, int line) {
+		if (this.size == this.opcodes.length) {
+			int capacity = this.size * 2;
+			this.opcodes = Arrays.copyOf(this.opcodes, capacity);
+			this.segments = Arrays.copyOf(this.segments, capacity);
+			this.indexes = Arrays.copyOf(this.indexes, capacity);
+			this.nameIds = Arrays.copyOf(this.nameIds, capacity);
+			this.lines = Arrays.copyOf(this.lines, capacity);
+		}
+		this.opcodes[this.size] = (byte) command.ordinal();
+		this.segments[this.size] = (byte) segment.ordinal();
+		this.indexes[this.size] = index;
+		this.nameIds[this.size] = nameId;
+		this.lines[this.size] = line;
+		this.size++;
+	}
+
+	//a new name, the parser looks a name up before adding it
+	public int addName(String name) {
+		if (this.nameCount == this.names.length) {
+			this.names = Arrays.copyOf(this.names, this.nameCount * 2);
+		}
+		this.names[this.nameCount] = name;
+		return this.nameCount++;
+	}
+
+	public String getFileName() {
+		return fileName;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public Command command(int i) {
+		return COMMANDS[this.opcodes[i]];
+	}
+
+	public Segment segment(int i) {
+		return SEGMENTS[this.segments[i]];
+	}
+
+	public int index(int i) {
+		return indexes[i];
+	}
+
+	//the label, function or called function of the command, null for the others
+	public String name(int i) {
+		int id = this.nameIds[i];
+		return id < 0 ? null : this.names[id];
+	}
+
+	public int nameId(int i) {
+		return nameIds[i];
+	}
+
+	public int nameCount() {
+		return nameCount;
+	}
+
+	public int line(int i) {
+		return lines[i];
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the command as it is written in the .vm file, with single spaces
+	 * @Date 13:43 2026/10/18
+	 * @Param [i]
+	 * @return java.lang.String
+	 **/
+	public String toString(int i) {
+		Command command = command(i);
+		switch (command) {
+			case PUSH:
+			case POP:
+				return command.getKeyword() + " " + segment(i).getKeyword() + " " + index(i);
+			case LABEL:
+			case GOTO:
+			case IF_GOTO:
+				return command.getKeyword() + " " + name(i);
+			case FUNCTION:
+			case CALL:
+				return command.getKeyword() + " " + name(i) + " " + index(i);
+			default:
+				return command.getKeyword();
+		}
+	}
+}
@@ -0,0 +1,85 @@
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:43
+ *
+ * The Parser API of the book over a CommandStream: advance() goes to the next command of the
+ * stream, and the arguments are read from it. The CodeWriter reads the stream directly, this is
+ * for the code which walks the commands one by one.
+ */
+public class Parser {
+	private CommandStream stream;
+	//the index of the current command in the stream, -1 before the first advance()
+	private int current = -1;
+
+	public Parser(File file) throws IOException {
+		this(VMParser.parse(file));
+	}
+
+	public Parser(CommandStream stream) {
+		this.stream = stream;
+	}
+
+	public CommandStream getStream() {
+		return stream;
+	}
+
+	public int getIndex() {
+		return current;
+	}
+
+	public boolean hasMoreCommands() {
+		return this.current + 1 < this.stream.size();
+	}
+
+	public void advance() {
+		this.current++;
+	}
+
+	public CommandType getCommandType() {
+		return this.stream.command(this.current).getType();
+	}
+
+	//the current command with single spaces and without the comment
+	public String getCurrentCommand() {
+		return this.stream.toString(this.current);
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the first argument: the command itself for an arithmetic command, the
+	 * segment for push and pop, the name for the others. return has no argument.
+	 * @Date 13:43 2026/10/18
+	 * @Param []
+	 * @return java.lang.String
+	 **/
+	public String arg1() {
+		Command command = this.stream.command(this.current);
+		switch (command.getType()) {
+			case C_ARITHMETIC:
+				return command.getKeyword();
+			case C_PUSH:
+			case C_POP:
+				return this.stream.segment(this.current).getKeyword();
+			case C_RETURN:
+				throw new IllegalStateException("return has no argument");
+			default:
+				return this.stream.name(this.current);
+		}
+	}
+
+	//the index of push and pop, the locals of function, the arguments of call
+	public int arg2() {
+		switch (getCommandType()) {
+			case C_PUSH:
+			case C_POP:
+			case C_FUNCTION:
+			case C_CALL:
+				return this.stream.index(this.current);
+			default:
+				throw new IllegalStateException("the command has no second argument");
+		}
+	}
+}
@@ -0,0 +1,29 @@
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:43
+ *
+ * The memory segments of push and pop, in the order of the Segment of the JackCompiler. NONE is
+ * the segment of the other commands.
+ */
+public enum Segment {
+	CONST("constant"),
+	ARG("argument"),
+	LOCAL("local"),
+	STATIC("static"),
+	THIS("this"),
+	THAT("that"),
+	POINTER("pointer"),
+	TEMP("temp"),
+	NONE("");
+
+	//the word in the .vm file
+	private final String keyword;
+
+	Segment(String keyword) {
+		this.keyword = keyword;
+	}
+
+	public String getKeyword() {
+		return keyword;
+	}
+}
@@ -0,0 +1,309 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:43
+ *
+ * Parses a .vm file into a CommandStream. The file is mapped into memory and the words are
+ * compared byte by byte with the keywords, so a line becomes a few ints and no String. A label
+ * or function name is looked up in a hash table by its bytes, only a name seen for the first time
+ * is made into a String. A name is letters, digits, '_', '.' and ':' and doesn't start with a
+ * digit, so it never has the '$' of the labels the CodeWriter makes. The functions starting with
+ * "VM." are the routines of the CodeWriter.
+ */
+public class VMParser {
+	private static final Command[] COMMANDS = Command.values();
+	private static final Segment[] SEGMENTS = Segment.values();
+	//the keywords in the order of the enums
+	private static final byte[][] COMMAND_WORDS = new byte[COMMANDS.length][];
+	private static final byte[][] SEGMENT_WORDS = new byte[SEGMENTS.length][];
+
+	static {
+		for (Command command : COMMANDS) {
+			COMMAND_WORDS[command.ordinal()] = command.getKeyword()
+					.getBytes(StandardCharsets.US_ASCII);
+		}
+		for (Segment segment : SEGMENTS) {
+			SEGMENT_WORDS[segment.ordinal()] = segment.getKeyword()
+					.getBytes(StandardCharsets.US_ASCII);
+		}
+	}
+
+	private ByteBuffer buffer;
+	private String fileName;
+	private CommandStream stream;
+	//the words of the current line, a fourth word is always an error
+	private int[] starts = new int[4];
+	private int[] ends = new int[4];
+	private int wordCount;
+	private int lineNumber;
+	//an open addressing table of the name ids + 1, 0 is empty. A name is compared with its first
+	// place in the buffer.
+	private int[] table = new int[64];
+	private int[] nameHashes = new int[16];
+	private int[] nameStarts = new int[16];
+	private int[] nameLengths = new int[16];
+
+	public VMParser(File file) throws IOException {
+		this(map(file), baseName(file));
+	}
+
+	public VMParser(ByteBuffer buffer, String fileName) {
+		this.buffer = buffer;
+		this.fileName = fileName;
+	}
+
+	//map the file read only, the mapping is still valid after the channel closed
+	public static ByteBuffer map(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+		     FileChannel channel = raf.getChannel()) {
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+
+	//"Foo.vm" is "Foo"
+	public static String baseName(File file) {
+		String name = file.getName();
+		int dot = name.lastIndexOf('.');
+		return dot > 0 ? name.substring(0, dot) : name;
+	}
+
+	public static CommandStream parse(File file) throws IOException {
+		return new VMParser(file).parse();
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //parse the whole buffer, an unknown command or a wrong argument throws an
+	 * IllegalArgumentException with the file and the line
+	 * @Date 13:43 2026/10/18
+	 * @Param []
+	 * @return CommandStream
+	 **/
+	public CommandStream parse() {
+		this.stream = new CommandStream(this.fileName);
+		ByteBuffer buf = this.buffer;
+		int limit = buf.limit();
+		int pos = 0;
+		while (pos < limit) {
+			this.lineNumber++;
+			this.wordCount = 0;
+			int wordStart = -1;
+			while (pos < limit) {
+				byte b = buf.get(pos);
+				if (b == '\n' || b == '/' && pos + 1 < limit && buf.get(pos + 1) == '/') {
+					break;
+				}
+				if (b == ' ' || b == '\t' || b == '\r') {
+					if (wordStart >= 0) {
+						addWord(wordStart, pos);
+						wordStart = -1;
+					}
+				} else if (wordStart < 0) {
+					wordStart = pos;
+				}
+				pos++;
+			}
+			if (wordStart >= 0) {
+				addWord(wordStart, pos);
+			}
+			//skip the comment and the '\n'
+			while (pos < limit && buf.get(pos) != '\n') {
+				pos++;
+			}
+			pos++;
+			if (this.wordCount > 0) {
+				command();
+			}
+		}
+		return this.stream;
+	}
+
+	private void addWord(int start, int end) {
+		if (this.wordCount == this.starts.length) {
+			throw error("too many words");
+		}
+		this.starts[this.wordCount] = start;
+		this.ends[this.wordCount] = end;
+		this.wordCount++;
+	}
+
+	//the words of the current line make a command
+	private void command() {
+		int opcode = find(COMMAND_WORDS, this.starts[0], this.ends[0]);
+		if (opcode < 0) {
+			throw error("unknown command");
+		}
+		Command command = COMMANDS[opcode];
+		switch (command) {
+			case PUSH:
+			case POP:
+				expectWords(3);
+				int segment = find(SEGMENT_WORDS, this.starts[1], this.ends[1]);
+				if (segment < 0 || segment == Segment.NONE.ordinal()) {
+					throw error("unknown segment");
+				}
+				this.stream.add(command, SEGMENTS[segment], number(2), -1,
+						this.lineNumber);
+				break;
+			case LABEL:
+			case GOTO:
+			case IF_GOTO:
+				expectWords(2);
+				checkName(1, false);
+				this.stream.add(command, Segment.NONE, 0, nameId(1), this.lineNumber);
+				break;
+			case FUNCTION:
+			case CALL:
+				expectWords(3);
+				checkName(1, true);
+				this.stream.add(command, Segment.NONE, number(2), nameId(1), this.lineNumber);
+				break;
+			default:
+				expectWords(1);
+				this.stream.add(command, Segment.NONE, 0, -1, this.lineNumber);
+				break;
+		}
+	}
+
+	private void expectWords(int count) {
+		if (this.wordCount != count) {
+			throw error("expected " + (count - 1) + " arguments");
+		}
+	}
+
+	//the index of the word equal to the bytes in [start, end), -1 if none
+	private int find(byte[][] words, int start, int end) {
+		int length = end - start;
+		byte first = this.buffer.get(start);
+		for (int i = 0; i < words.length; i++) {
+			byte[] word = words[i];
+			if (word.length == length && length > 0 && word[0] == first && equals(word, start)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private boolean equals(byte[] word, int start) {
+		for (int i = 1; i < word.length; i++) {
+			if (this.buffer.get(start + i) != word[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	//the word is a vm name, a function name doesn't start with "VM."
+	private void checkName(int word, boolean function) {
+		int start = this.starts[word];
+		for (int i = start; i < this.ends[word]; i++) {
+			byte b = this.buffer.get(i);
+			boolean letter = b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z' || b == '_' || b == '.'
+					|| b == ':';
+			if (!letter && (b < '0' || b > '9' || i == start)) {
+				throw error("not a valid name");
+			}
+		}
+		if (function && this.ends[word] - start > 3 && this.buffer.get(start) == 'V'
+				&& this.buffer.get(start + 1) == 'M' && this.buffer.get(start + 2) == '.') {
+			throw error("the VM. functions are reserved");
+		}
+	}
+
+	//a decimal in 0..32767
+	private int number(int word) {
+		int value = 0;
+		for (int i = this.starts[word]; i < this.ends[word]; i++) {
+			int digit = this.buffer.get(i) - '0';
+			if (digit < 0 || digit > 9) {
+				throw error("not a number");
+			}
+			value = value * 10 + digit;
+			if (value > 32767) {
+				throw error("the number is too large");
+			}
+		}
+		return value;
+	}
+
+	/*
+	 * @Author HuangChuan
+	 * @Description //the id of the name in the word, the same name always gets the same id
+	 * @Date 13:43 2026/10/18
+	 * @Param [word]
+	 * @return int
+	 **/
+	private int nameId(int word) {
+		int start = this.starts[word];
+		int length = this.ends[word] - start;
+		int hash = 0;
+		for (int i = start; i < start + length; i++) {
+			hash = 31 * hash + this.buffer.get(i);
+		}
+		int mask = this.table.length - 1;
+		int slot = (hash ^ hash >>> 16) & mask;
+		while (this.table[slot] != 0) {
+			int id = this.table[slot] - 1;
+			if (this.nameHashes[id] == hash && this.nameLengths[id] == length
+					&& sameBytes(this.nameStarts[id], start, length)) {
+				return id;
+			}
+			slot = (slot + 1) & mask;
+		}
+		byte[] bytes = new byte[length];
+		this.buffer.get(start, bytes);
+		int id = this.stream.addName(new String(bytes, StandardCharsets.US_ASCII));
+		if (id == this.nameHashes.length) {
+			this.nameHashes = Arrays.copyOf(this.nameHashes, id * 2);
+			this.nameStarts = Arrays.copyOf(this.nameStarts, id * 2);
+			this.nameLengths = Arrays.copyOf(this.nameLengths, id * 2);
+		}
+		this.nameHashes[id] = hash;
+		this.nameStarts[id] = start;
+		this.nameLengths[id] = length;
+		this.table[slot] = id + 1;
+		if (2 * (id + 1) > this.table.length) {
+			rehash();
+		}
+		return id;
+	}
+
+	private boolean sameBytes(int x, int y, int length) {
+		for (int i = 0; i < length; i++) {
+			if (this.buffer.get(x + i) != this.buffer.get(y + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void rehash() {
+		int[] table = new int[this.table.length * 2];
+		int mask = table.length - 1;
+		for (int id = 0; id < this.stream.nameCount(); id++) {
+			int hash = this.nameHashes[id];
+			int slot = (hash ^ hash >>> 16) & mask;
+			while (table[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = id + 1;
+		}
+		this.table = table;
+	}
+
+	private IllegalArgumentException error(String message) {
+		int start = this.wordCount > 0 ? this.starts[0] : 0;
+		int end = this.wordCount > 0 ? this.ends[this.wordCount - 1] : 0;
+		byte[] bytes = new byte[end - start];
+		this.buffer.get(start, bytes);
+		return new IllegalArgumentException(this.fileName + ".vm line " + this.lineNumber
+				+ ": " + message + ": " + new String(bytes, StandardCharsets.US_ASCII));
+	}
+}
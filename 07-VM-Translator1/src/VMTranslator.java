@@ -0,0 +1,55 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * @Author HuangChuan
+ * @Create in 2026/10/18 13:49
+ *
+ * Translates a .vm file into Foo.asm beside it, or all the .vm files of a directory into
+ * Foo/Foo.asm. The bootstrap code is written when the directory has a Sys.vm. With -O the
+ * top of the stack is kept in D between the commands, and the comparisons outside the loops call
+ * shared routines.
+ */
+public class VMTranslator {
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0 || args.length > 2 || args.length == 2 && !args[0].equals("-O")) {
+			System.out.println("Usage:java VMTranslator [-O] [filename|directory]");
+			return;
+		}
+		//-O turns on the optimizations of the CodeWriter
+		boolean optimize = args.length == 2;
+		File fileIn = new File(args[args.length - 1]);
+		ArrayList<File> vmFiles = new ArrayList<>();
+		if (fileIn.isFile()) {
+			if (!fileIn.getName().endsWith(".vm")) {
+				throw new IllegalArgumentException(".vm file is required!");
+			}
+			vmFiles.add(fileIn);
+		} else if (fileIn.isDirectory()) {
+			File[] files = fileIn.listFiles((dir, name) -> name.endsWith(".vm"));
+			if (files == null || files.length == 0) {
+				throw new IllegalArgumentException("No vm file in this directory");
+			}
+			Arrays.sort(files);
+			vmFiles.addAll(Arrays.asList(files));
+		} else {
+			throw new IllegalArgumentException("No such file: " + fileIn);
+		}
+		CodeWriter codeWriter = new CodeWriter(fileIn);
+		codeWriter.setOptimize(optimize);
+		if (fileIn.isDirectory() && new File(fileIn, "Sys.vm").isFile()) {
+			codeWriter.writeInit();
+		}
+		int commands = 0;
+		for (File f : vmFiles) {
+			CommandStream stream = VMParser.parse(f);
+			codeWriter.write(stream);
+			commands += stream.size();
+		}
+		codeWriter.close();
+		System.out.println("File created : " + codeWriter.getOutputFile() + " (" + commands
+				+ " commands)");
+	}
+}